@@ -6,7 +6,9 @@ import org.junit.runners.Suite.SuiteClasses;
 
 /** Suite that includes all the tests for this homework assignment. */
 @RunWith(Suite.class)
-@SuiteClasses({ OptimizerTest.class, ArgParserTest.class, CsvParserTest.class })
+@SuiteClasses({ OptimizerTest.class, ArgParserTest.class, CsvParserTest.class,
+    TeamModelTest.class, TeamModelerTest.class, DriveStoreTest.class,
+    TeamRegistryTest.class, FeatureModelTest.class })
 public final class AllTests {
   // nothing needed here
 }
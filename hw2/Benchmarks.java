@@ -0,0 +1,218 @@
+package cse417;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+
+
+/**
+ * Program that times the main operations used to fit a {@code TeamModel} on
+ * randomly generated drives of one or more sizes. For each operation, it runs
+ * the operation repeatedly for a warm-up period and then for a measurement
+ * period and prints, as CSV, the average time per operation and the average
+ * number of bytes allocated per operation by the measuring thread.
+ * <p>
+ * The option {@code --drives} gives a comma-separated list of the numbers of
+ * drives to generate (by default, 1000, 100000, and 1000000). Sizes of ten
+ * million drives or more will need a larger heap, e.g., {@code -Xmx4g}. The
+ * options {@code --warmup} and {@code --time} give the number of seconds for
+ * which each operation is warmed up and measured, and {@code --seed} changes
+ * the random drives that are generated. Saving the output gives a baseline
+ * against which later runs can be compared.
+ * <p>
+ * If {@code LossKernel.BEST} is the vectorized kernel (see
+ * {@code VectorLossKernel} for how to enable it), the loss and derivative over
+ * a {@code DriveStore} are timed with both it and the scalar kernel.
+ */
+public class Benchmarks {
+
+  /** Penalty used when evaluating and fitting models. */
+  private static final double PENALTY = 0.01;
+
+  /** Tolerance used when fitting models. */
+  private static final double TOLERANCE = 5e-3;
+
+  /** Largest number of drives for which the slow search-based fit is run. */
+  private static final int MAX_SEARCH_DRIVES = 20000;
+
+  /** An operation to time, returning a value so it is not optimized away. */
+  @FunctionalInterface
+  private interface Operation {
+    double run();
+  }
+
+  /** Sum of the results of every operation run, printed at the end. */
+  private static double sink;
+
+  /** Seconds to warm up and to measure each operation. */
+  private static double warmupSeconds = 1;
+  private static double measureSeconds = 2;
+
+  /** Entry point for a program to time model fitting. */
+  public static void main(String[] args) {
+    ArgParser argParser = new ArgParser("Benchmarks");
+    argParser.addOption("drives", String.class);
+    argParser.addOption("warmup", Double.class);
+    argParser.addOption("time", Double.class);
+    argParser.addOption("seed", Integer.class);
+    args = argParser.parseArgs(args, 0, 0);
+
+    if (argParser.hasOption("warmup"))
+      warmupSeconds = argParser.getDoubleOption("warmup");
+    if (argParser.hasOption("time"))
+      measureSeconds = argParser.getDoubleOption("time");
+    long seed = argParser.hasOption("seed") ?
+        argParser.getIntegerOption("seed") : 417;
+    String sizes = argParser.hasOption("drives") ?
+        argParser.getStringOption("drives") : "1000,100000,1000000";
+
+    System.out.println("benchmark,drives,ns_per_op,bytes_per_op");
+    for (String size : sizes.split(","))
+      runAll(Integer.parseInt(size.trim()), seed);
+    System.err.println("(checksum " + sink + ")");
+  }
+
+  /** Times each operation on the given number of random drives. */
+  private static void runAll(int numDrives, long seed) {
+    List<Drive> drives = makeDrives(numDrives, seed);
+    DriveStore store = DriveStore.fromDrives(drives);
+    MatchupStats stats = MatchupStats.fromDrives(store);
+    TeamModel model = CoordinateDescent.findBestModel(
+        stats, PENALTY, TOLERANCE, new TeamModel(), FitListener.NONE);
+
+    time("TeamModel.evalLoss(List)", numDrives,
+        () -> model.evalLoss(drives, PENALTY));
+    time("TeamModel.evalLoss(DriveStore)", numDrives,
+        () -> model.evalLoss(store, PENALTY));
+    time("TeamModel.evalLoss(DriveStore, SCALAR)", numDrives,
+        () -> model.evalLoss(store, PENALTY, LossKernel.SCALAR));
+    if (LossKernel.BEST != LossKernel.SCALAR) {
+      time("TeamModel.evalLoss(DriveStore, vector)", numDrives,
+          () -> model.evalLoss(store, PENALTY, LossKernel.BEST));
+    }
+    time("TeamModel.evalLoss(MatchupStats)", numDrives,
+        () -> model.evalLoss(stats, PENALTY));
+    time("TeamModel.evalLossDerivative(List)", numDrives,
+        () -> model.evalLossDerivative(drives).getConstant());
+    time("TeamModel.evalLossDerivative(DriveStore, SCALAR)", numDrives,
+        () -> model.evalLossDerivative(store, LossKernel.SCALAR).getConstant());
+    if (LossKernel.BEST != LossKernel.SCALAR) {
+      time("TeamModel.evalLossDerivative(DriveStore, vector)", numDrives,
+          () -> model.evalLossDerivative(store, LossKernel.BEST).getConstant());
+    }
+    time("TeamModel.copy", numDrives,
+        () -> model.copy().getConstant());
+    time("MatchupStats.fromDrives(DriveStore)", numDrives,
+        () -> MatchupStats.fromDrives(store).getNumDrives());
+
+    // A unimodal search over one parameter of the loss, as done for every
+    // parameter by the search-based fit, with and without boxing.
+    String team = TeamModel.TEAMS.get(0);
+    TeamModel scratch = model.copy();
+    DoubleFunction<Double> boxed =
+        t -> scratch.setOffense(team, t).evalLoss(drives, PENALTY);
+    DoubleUnaryOperator unboxed =
+        t -> scratch.setOffense(team, t).evalLoss(drives, PENALTY);
+    time("Optimizer.findMinimumOfUnimodal(boxed)", numDrives,
+        () -> Optimizer.findMinimumOfUnimodal(boxed, -8, 8));
+    time("Optimizer.findMinimumOfUnimodalPrimitive", numDrives,
+        () -> Optimizer.findMinimumOfUnimodalPrimitive(unboxed, -8, 8));
+    time("Optimizer.findMinimumByBrent", numDrives,
+        () -> Optimizer.findMinimumByBrent(unboxed, -8, 8));
+
+    // Fits from scratch with each solver.
+    FitListener none = FitListener.NONE;
+    if (numDrives <= MAX_SEARCH_DRIVES) {
+      time("TeamModeler.findBestModelBySearch(TERNARY)", numDrives,
+          () -> TeamModeler.findBestModelBySearch(TeamModeler.Solver.TERNARY,
+              drives, PENALTY, TOLERANCE, new TeamModel(), none).getConstant());
+    }
+    time("CoordinateDescent.findBestModel(List)", numDrives,
+        () -> CoordinateDescent.findBestModel(
+            drives, PENALTY, TOLERANCE, new TeamModel(), none).getConstant());
+    time("CoordinateDescent.findBestModel(MatchupStats)", numDrives,
+        () -> CoordinateDescent.findBestModel(
+            stats, PENALTY, TOLERANCE, new TeamModel(), none).getConstant());
+    FeatureModel features = FeatureModel.standard(
+        TeamRegistry.DEFAULT, Feature.homeField());
+    DesignMatrix matrix = features.designMatrix(drives);
+    double[] changes = new double[numDrives];
+    for (int i = 0; i < numDrives; i++)
+      changes[i] = drives.get(i).getChange();
+    time("CoordinateDescent.findBestModel(DesignMatrix)", numDrives,
+        () -> CoordinateDescent.findBestModel(matrix, changes, null, PENALTY,
+            TOLERANCE, features, none).getParameter(0));
+    time("ProximalGradient.findBestModel", numDrives,
+        () -> ProximalGradient.findBestModel(
+            drives, PENALTY, TOLERANCE, new TeamModel(), none).getConstant());
+  }
+
+  /**
+   * Runs the operation for the warm-up period and then for the measurement
+   * period, and prints the average time and allocation of each run.
+   */
+  private static void time(String name, int numDrives, Operation op) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    runFor(op, warmupSeconds);
+
+    long startBytes = threads.getThreadAllocatedBytes(thread);
+    long startTime = System.nanoTime();
+    long count = runFor(op, measureSeconds);
+    long elapsed = System.nanoTime() - startTime;
+    long bytes = threads.getThreadAllocatedBytes(thread) - startBytes;
+
+    System.out.printf("%s,%d,%.1f,%.1f\n", name, numDrives,
+        (double) elapsed / count, (double) bytes / count);
+  }
+
+  /**
+   * Runs the operation repeatedly for at least the given number of seconds
+   * (and at least once) and returns the number of runs.
+   */
+  private static long runFor(Operation op, double seconds) {
+    long end = System.nanoTime() + (long) (seconds * 1e9);
+    long count = 0;
+    double sum = 0;
+    do {
+      sum += op.run();
+      count++;
+    } while (System.nanoTime() < end);
+    sink += sum;
+    return count;
+  }
+
+  /**
+   * Returns random drives between random teams in {@code TEAMS}, spread evenly
+   * over weeks 1 to 16, whose changes come from a random true model (in which
+   * only some teams differ from average) plus noise. The tests use the same
+   * drives.
+   */
+  static List<Drive> makeDrives(int numDrives, long seed) {
+    List<String> teams = TeamModel.TEAMS;
+    Random rand = new Random(seed);
+    double[] offenses = new double[teams.size()];
+    double[] defenses = new double[teams.size()];
+    for (int t = 0; t < teams.size(); t++) {
+      offenses[t] = (t % 3 == 0) ? rand.nextGaussian() : 0;
+      defenses[t] = (t % 4 == 0) ? rand.nextGaussian() : 0;
+    }
+
+    List<Drive> drives = new ArrayList<Drive>(numDrives);
+    for (int i = 0; i < numDrives; i++) {
+      int off = rand.nextInt(teams.size());
+      int def = (off + 1 + rand.nextInt(teams.size() - 1)) % teams.size();
+      double start = 3 * rand.nextDouble();
+      double change = 0.3 + offenses[off] - defenses[def] + rand.nextGaussian();
+      drives.add(new Drive(1 + i % 16, teams.get(off), teams.get(def),
+          start, start + change));
+    }
+    return drives;
+  }
+}
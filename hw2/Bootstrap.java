@@ -0,0 +1,124 @@
+package cse417;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Estimates the uncertainty in each parameter of the best model for some
+ * drives by refitting it to bootstrap samples of the drives. Each sample draws
+ * as many drives as there are, with replacement, and is represented by the
+ * number of times each drive was drawn, which is used as its weight in the
+ * loss. So no drives are copied. Each replicate is fit starting from the model
+ * for all the drives, which is usually close, and the replicates are fit in
+ * parallel.
+ */
+public class Bootstrap {
+
+  /** Fits a model to the given weighted drives starting from the given model. */
+  @FunctionalInterface
+  public interface Fitter {
+    TeamModel fit(DriveStore drives, double[] weights, TeamModel start);
+  }
+
+  /** Model fit to all of the drives. */
+  private final TeamModel model;
+
+  /** Values of each parameter over the replicates, in increasing order. */
+  private final double[] constants;
+  private final double[][] offenses;  // by team then replicate
+  private final double[][] defenses;
+
+  /**
+   * Fits the given number of replicates of the given model, which should be
+   * the best fit to all of the drives, on a pool of {@code threads} threads.
+   * Replicate {@code r} is drawn using a generator seeded by {@code seed + r},
+   * so the results do not depend on the number of threads.
+   */
+  public Bootstrap(DriveStore drives, TeamModel model, Fitter fitter,
+      int numReplicates, long seed, int threads) {
+    assert numReplicates > 0;
+    this.model = model;
+
+    List<TeamModel> replicates = new ArrayList<>();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<TeamModel>> tasks = new ArrayList<>();
+      for (int r = 0; r < numReplicates; r++) {
+        final Random rand = new Random(seed + r);
+        tasks.add(pool.submit(
+            () -> fitter.fit(drives, resample(drives.size(), rand), model)));
+      }
+      for (ForkJoinTask<TeamModel> task : tasks)
+        replicates.add(task.join());
+    } finally {
+      pool.shutdown();
+    }
+
+    int numTeams = model.getNumTeams();
+    constants = new double[numReplicates];
+    offenses = new double[numTeams][numReplicates];
+    defenses = new double[numTeams][numReplicates];
+    for (int r = 0; r < numReplicates; r++) {
+      TeamModel replicate = replicates.get(r);
+      constants[r] = replicate.getConstant();
+      for (int t = 0; t < numTeams; t++) {
+        offenses[t][r] = replicate.getOffense(t);
+        defenses[t][r] = replicate.getDefense(t);
+      }
+    }
+    Arrays.sort(constants);
+    for (int t = 0; t < numTeams; t++) {
+      Arrays.sort(offenses[t]);
+      Arrays.sort(defenses[t]);
+    }
+  }
+
+  /**
+   * Returns the number of times each of {@code n} indexes is drawn when
+   * {@code n} are drawn uniformly with replacement.
+   */
+  static double[] resample(int n, Random rand) {
+    double[] counts = new double[n];
+    for (int i = 0; i < n; i++)
+      counts[rand.nextInt(n)] += 1;
+    return counts;
+  }
+
+  /** Returns the model fit to all of the drives. */
+  public TeamModel getModel() { return model; }
+
+  /** Returns the number of replicates. */
+  public int getNumReplicates() { return constants.length; }
+
+  /**
+   * Returns the model whose parameters are each the given quantile (in [0, 1])
+   * of that parameter over the replicates. For example, the 0.025 and 0.975
+   * quantiles give a 95% interval for each parameter.
+   */
+  public TeamModel getQuantile(double q) {
+    assert 0 <= q && q <= 1;
+    TeamModel quantile = new TeamModel(model.getTeams());
+    quantile.setConstant(quantile(constants, q));
+    for (int t = 0; t < offenses.length; t++) {
+      quantile.setOffense(t, quantile(offenses[t], q));
+      quantile.setDefense(t, quantile(defenses[t], q));
+    }
+    return quantile;
+  }
+
+  /**
+   * Returns the given quantile of the values in the sorted array, linearly
+   * interpolating between the closest two.
+   */
+  private static double quantile(double[] sorted, double q) {
+    double pos = q * (sorted.length - 1);
+    int lo = (int) Math.floor(pos);
+    int hi = Math.min(lo + 1, sorted.length - 1);
+    return sorted[lo] + (pos - lo) * (sorted[hi] - sorted[lo]);
+  }
+}
@@ -0,0 +1,379 @@
+package cse417;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Finds the {@code TeamModel} minimizing the loss function by coordinate
+ * descent, like {@code TeamModeler.findBestModel}, but solving for each
+ * parameter in closed form rather than by searching.
+ * <p>
+ * With all other parameters fixed, the loss as a function of one parameter is
+ * a parabola plus a multiple of its absolute value, so its minimum is found by
+ * soft-thresholding the average residual of the drives that parameter affects.
+ * The residual of every drive is maintained as parameters change, so updating
+ * the parameter for a team takes time proportional to that team's drives
+ * rather than requiring a pass over all drives.
+ * <p>
+ * The same updates can be computed from {@code MatchupStats} instead of the
+ * drives themselves, in which case each update takes time proportional to the
+ * number of teams, regardless of the number of drives.
+ * <p>
+ * The drives are read from a {@code DriveStore}, so a range of weeks can be
+ * fit without copying it. A list of drives is copied into a store first.
+ * <p>
+ * Drives can also be given weights, in which case the weighted loss (see
+ * {@code TeamModel.evalLoss}) is minimized. The averages above become weighted
+ * averages, and the threshold scales with the total weight instead of the
+ * number of drives.
+ * <p>
+ * Finally, the same updates fit a {@code FeatureModel} from the sparse
+ * {@code DesignMatrix} of its features, with the residuals maintained as for
+ * the drives above.
+ */
+public class CoordinateDescent {
+
+  /**
+   * Returns the best model for the given drives, starting from {@code start}
+   * (which is not modified) and stopping once the L0 norm of the change made
+   * in one pass over the parameters is at most {@code tol}.
+   *
+   * @param drives List of the drives that the model should describe.
+   * @param penalty Constant factor on the penalty term of the loss function.
+   * @param tol Stop when the L0 change per iteration less than this amount.
+   * @param start Model from which to begin the descent.
+   * @param listener Receives reports of the progress of the fit.
+   */
+  public static TeamModel findBestModel(List<Drive> drives, double penalty,
+      double tol, TeamModel start, FitListener listener) {
+    return findBestModel(drives, null, penalty, tol, start, listener);
+  }
+
+  /**
+   * As above but minimizing the loss with the given weight on each drive. If
+   * {@code weights} is null, every drive has weight one.
+   */
+  public static TeamModel findBestModel(List<Drive> drives, double[] weights,
+      double penalty, double tol, TeamModel start, FitListener listener) {
+    return findBestModel(DriveStore.fromDrives(drives, start.getTeams()),
+        DriveStore.inStoreOrder(drives, weights), penalty, tol, start,
+        listener);
+  }
+
+  /** As above but with the drives in a {@code DriveStore}. */
+  public static TeamModel findBestModel(DriveStore drives, double penalty,
+      double tol, TeamModel start, FitListener listener) {
+    return findBestModel(drives, null, penalty, tol, start, listener);
+  }
+
+  /** As above but with the given weights (or null) on the drives. */
+  public static TeamModel findBestModel(DriveStore drives, double[] weights,
+      double penalty, double tol, TeamModel start, FitListener listener) {
+    TeamModel best = start.copy();
+    int numTeams = best.getNumTeams();
+    int n = drives.size();
+    if (n == 0)
+      return best;
+
+    if (weights == null) {
+      weights = new double[n];
+      Arrays.fill(weights, 1);
+    }
+    assert weights.length == n;
+
+    // Find the drives involving each offense and defense.
+    int[][] byOffense = new int[numTeams][];
+    int[][] byDefense = new int[numTeams][];
+    int[] numOffense = new int[numTeams];
+    int[] numDefense = new int[numTeams];
+    for (int i = 0; i < n; i++) {
+      numOffense[drives.offense(i)]++;
+      numDefense[drives.defense(i)]++;
+    }
+    for (int t = 0; t < numTeams; t++) {
+      byOffense[t] = new int[numOffense[t]];
+      byDefense[t] = new int[numDefense[t]];
+      numOffense[t] = numDefense[t] = 0;
+    }
+    for (int i = 0; i < n; i++) {
+      byOffense[drives.offense(i)][numOffense[drives.offense(i)]++] = i;
+      byDefense[drives.defense(i)][numDefense[drives.defense(i)]++] = i;
+    }
+
+    // Find the total weight of the drives involving each offense and defense.
+    double[] offenseWeights = new double[numTeams];
+    double[] defenseWeights = new double[numTeams];
+    double totalWeight = 0;
+    for (int i = 0; i < n; i++) {
+      assert weights[i] >= 0;
+      offenseWeights[drives.offense(i)] += weights[i];
+      defenseWeights[drives.defense(i)] += weights[i];
+      totalWeight += weights[i];
+    }
+
+    // Inv: residuals[i] is the actual minus predicted change for drive i.
+    double[] residuals = new double[n];
+    for (int i = 0; i < n; i++) {
+      residuals[i] = drives.change(i) -
+          best.predict(drives.offense(i), drives.defense(i));
+    }
+
+    listener.fitStarted("coordinate", best.getTeams(), penalty);
+    long fitStart = System.nanoTime();
+    int sweeps = 0;
+    TeamModel prev = best.copy();
+    double change = Double.POSITIVE_INFINITY;
+    while (change > tol) {
+      long sweepStart = System.nanoTime();
+      prev.copyFrom(best);
+
+      for (int t = 0; t < numTeams; t++) {
+        double oldValue = best.getOffense(t);
+        double newValue = bestValue(oldValue, residuals, weights,
+            byOffense[t], offenseWeights[t], penalty, totalWeight);
+        updateResiduals(residuals, byOffense[t], oldValue - newValue);
+        best.setOffense(t, newValue);
+        listener.parameterChanged(FitListener.Parameter.OFFENSE, t, newValue);
+      }
+
+      // Defense enters the prediction with a minus sign, so solve for its
+      // negation, which has the same form as the offense.
+      for (int t = 0; t < numTeams; t++) {
+        double oldValue = -best.getDefense(t);
+        double newValue = bestValue(oldValue, residuals, weights,
+            byDefense[t], defenseWeights[t], penalty, totalWeight);
+        updateResiduals(residuals, byDefense[t], oldValue - newValue);
+        best.setDefense(t, 0 - newValue);  // avoid -0.0
+        listener.parameterChanged(
+            FitListener.Parameter.DEFENSE, t, best.getDefense(t));
+      }
+
+      double oldConstant = best.getConstant();
+      double sum = 0;
+      for (int i = 0; i < n; i++)
+        sum += weights[i] * residuals[i];
+      double newConstant = bestValue(
+          oldConstant, sum, totalWeight, penalty, totalWeight);
+      for (int i = 0; i < n; i++)
+        residuals[i] += oldConstant - newConstant;
+      best.setConstant(newConstant);
+      listener.parameterChanged(
+          FitListener.Parameter.CONSTANT, -1, newConstant);
+
+      change = prev.addScaledBy(-1, best).norm0();
+      listener.sweepFinished(
+          ++sweeps, System.nanoTime() - sweepStart, change, 0);
+    }
+    listener.fitFinished(sweeps, 0, System.nanoTime() - fitStart);
+    return best;
+  }
+
+  /**
+   * Returns the value of a parameter, added to the predictions of the given
+   * drives (of total weight {@code weight}) and currently equal to
+   * {@code oldValue}, that minimizes the loss.
+   */
+  private static double bestValue(double oldValue, double[] residuals,
+      double[] weights, int[] indexes, double weight, double penalty,
+      double totalWeight) {
+    double sum = 0;
+    for (int i : indexes)
+      sum += weights[i] * residuals[i];
+    return bestValue(oldValue, sum, weight, penalty, totalWeight);
+  }
+
+  /**
+   * Returns the value of a parameter, currently equal to {@code oldValue}, that
+   * minimizes the loss, given that it is added to the predictions of drives
+   * with total weight {@code weight} whose weighted residuals sum to
+   * {@code residualSum}. (Without weights, the weights are the counts. For a
+   * column of a design matrix, each residual is also multiplied by its entry
+   * in the column and each weight by the square of that entry.)
+   */
+  private static double bestValue(double oldValue, double residualSum,
+      double weight, double penalty, double totalWeight) {
+    if (weight == 0)
+      return 0;  // only the penalty depends on this parameter
+
+    return clamp(Optimizer.softThreshold(oldValue + residualSum / weight,
+        penalty * totalWeight / (2 * weight)));
+  }
+
+  /**
+   * As above but with the drives described by their sufficient statistics.
+   * Each pass over the parameters takes time proportional to the number of
+   * matchups between teams.
+   */
+  public static TeamModel findBestModel(MatchupStats stats, double penalty,
+      double tol, TeamModel start, FitListener listener) {
+    TeamModel best = start.copy();
+    int numTeams = best.getNumTeams();
+    assert stats.getNumTeams() == numTeams;
+    int n = stats.getNumDrives();
+    if (n == 0)
+      return best;
+
+    int[] numOffense = new int[numTeams];
+    int[] numDefense = new int[numTeams];
+    for (int o = 0; o < numTeams; o++) {
+      for (int d = 0; d < numTeams; d++) {
+        numOffense[o] += stats.getCount(o, d);
+        numDefense[d] += stats.getCount(o, d);
+      }
+    }
+
+    listener.fitStarted("coordinate-stats", best.getTeams(), penalty);
+    long fitStart = System.nanoTime();
+    int sweeps = 0;
+    TeamModel prev = best.copy();
+    double change = Double.POSITIVE_INFINITY;
+    while (change > tol) {
+      long sweepStart = System.nanoTime();
+      prev.copyFrom(best);
+
+      for (int t = 0; t < numTeams; t++) {
+        double sum = 0;
+        for (int d = 0; d < numTeams; d++)
+          sum += residualSum(stats, best, t, d);
+        best.setOffense(t, bestValue(
+            best.getOffense(t), sum, numOffense[t], penalty, n));
+        listener.parameterChanged(
+            FitListener.Parameter.OFFENSE, t, best.getOffense(t));
+      }
+
+      // As above, solve for the negation of each defense.
+      for (int t = 0; t < numTeams; t++) {
+        double sum = 0;
+        for (int o = 0; o < numTeams; o++)
+          sum += residualSum(stats, best, o, t);
+        best.setDefense(t, 0 - bestValue(
+            -best.getDefense(t), sum, numDefense[t], penalty, n));
+        listener.parameterChanged(
+            FitListener.Parameter.DEFENSE, t, best.getDefense(t));
+      }
+
+      double sum = 0;
+      for (int o = 0; o < numTeams; o++) {
+        for (int d = 0; d < numTeams; d++)
+          sum += residualSum(stats, best, o, d);
+      }
+      best.setConstant(bestValue(best.getConstant(), sum, n, penalty, n));
+      listener.parameterChanged(
+          FitListener.Parameter.CONSTANT, -1, best.getConstant());
+
+      change = prev.addScaledBy(-1, best).norm0();
+      listener.sweepFinished(
+          ++sweeps, System.nanoTime() - sweepStart, change, 0);
+    }
+    listener.fitFinished(sweeps, 0, System.nanoTime() - fitStart);
+    return best;
+  }
+
+  /**
+   * As above but fitting a {@code FeatureModel}, given the design matrix of
+   * its features of the drives, the change in each drive, and the weight of
+   * each drive (or null for weights of one). Each parameter is solved for in
+   * closed form in the same way, except that the entries in its column need
+   * not be one, so the average residual is weighted by them. A pass over the
+   * parameters takes time proportional to the number of non-zero entries in
+   * the matrix, so models with hundreds of parameters are no harder to fit
+   * than a {@code TeamModel} as long as each drive has few non-zero features.
+   */
+  public static FeatureModel findBestModel(DesignMatrix matrix,
+      double[] changes, double[] weights, double penalty, double tol,
+      FeatureModel start, FitListener listener) {
+    FeatureModel best = start.copy();
+    int n = matrix.getNumRows();
+    int m = matrix.getNumColumns();
+    assert best.getNumParameters() == m && changes.length == n;
+    if (n == 0)
+      return best;
+
+    if (weights == null) {
+      weights = new double[n];
+      Arrays.fill(weights, 1);
+    }
+    assert weights.length == n;
+
+    // Find the weighted sum of the squared entries of each column.
+    double totalWeight = 0;
+    for (int i = 0; i < n; i++)
+      totalWeight += weights[i];
+    double[] columnWeights = new double[m];
+    for (int j = 0; j < m; j++) {
+      for (int k = matrix.columnStart(j); k < matrix.columnEnd(j); k++) {
+        double x = matrix.value(k);
+        columnWeights[j] += weights[matrix.row(k)] * x * x;
+      }
+    }
+
+    // Inv: residuals[i] is the actual minus predicted change for drive i.
+    double[] residuals = new double[n];
+    best.predict(matrix, residuals);
+    for (int i = 0; i < n; i++)
+      residuals[i] = changes[i] - residuals[i];
+
+    listener.fitStarted("coordinate-features", best.getTeams(), penalty);
+    long fitStart = System.nanoTime();
+    int sweeps = 0;
+    FeatureModel prev;
+    double change = Double.POSITIVE_INFINITY;
+    while (change > tol) {
+      long sweepStart = System.nanoTime();
+      prev = best.copy();
+
+      for (int j = 0; j < m; j++) {
+        double sum = 0;
+        for (int k = matrix.columnStart(j); k < matrix.columnEnd(j); k++) {
+          int i = matrix.row(k);
+          sum += weights[i] * matrix.value(k) * residuals[i];
+        }
+        double oldValue = best.getParameter(j);
+        double newValue = bestValue(
+            oldValue, sum, columnWeights[j], penalty, totalWeight);
+        if (newValue != oldValue) {
+          double delta = oldValue - newValue;
+          for (int k = matrix.columnStart(j); k < matrix.columnEnd(j); k++)
+            residuals[matrix.row(k)] += delta * matrix.value(k);
+          best.setParameter(j, newValue);
+        }
+        listener.parameterChanged(FitListener.Parameter.FEATURE, j, newValue);
+      }
+
+      change = prev.maxDifference(best);
+      listener.sweepFinished(
+          ++sweeps, System.nanoTime() - sweepStart, change, 0);
+    }
+    listener.fitFinished(sweeps, 0, System.nanoTime() - fitStart);
+    return best;
+  }
+
+  /**
+   * Returns the sum of the actual minus predicted changes over the drives
+   * with the given offense and defense.
+   */
+  private static double residualSum(
+      MatchupStats stats, TeamModel model, int offense, int defense) {
+    int count = stats.getCount(offense, defense);
+    if (count == 0)
+      return 0;
+    double predicted = model.getConstant() +
+        model.getOffense(offense) - model.getDefense(defense);
+    return stats.getSum(offense, defense) - count * predicted;
+  }
+
+  /** Adds {@code delta} to the residuals of the given drives. */
+  private static void updateResiduals(
+      double[] residuals, int[] indexes, double delta) {
+    if (delta != 0) {
+      for (int i : indexes)
+        residuals[i] += delta;
+    }
+  }
+
+  /** Returns the closest value to {@code x} in [-LIMIT, LIMIT]. */
+  private static double clamp(double x) {
+    return Math.max(-TeamModel.LIMIT, Math.min(TeamModel.LIMIT, x));
+  }
+}
@@ -0,0 +1,169 @@
+package cse417;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Estimates how well models fit with each of a list of penalties predict drives
+ * that were not used to fit them. The drives are split into folds, each with
+ * some drives to train on and some to test on. For each fold, the models for
+ * all the penalties are fit in decreasing order of penalty, each starting from
+ * the last, and the error of each on the test drives is recorded. The folds are
+ * independent, so they are evaluated in parallel.
+ */
+public class CrossValidation {
+
+  /** Fits a model to the given drives starting from the given model. */
+  @FunctionalInterface
+  public interface Fitter {
+    TeamModel fit(DriveStore drives, double penalty, TeamModel start);
+  }
+
+  /** Drives to fit models to and drives to test them on. */
+  public static final class Fold {
+    final DriveStore train;
+    final MatchupStats test;
+
+    public Fold(DriveStore train, MatchupStats test) {
+      assert test.getNumDrives() > 0;
+      this.train = train;
+      this.test = test;
+    }
+  }
+
+  /**
+   * Returns {@code k} folds of the given drives, where fold {@code f} tests on
+   * the drives whose index is {@code f} mod {@code k} and trains on the rest.
+   */
+  public static List<Fold> kFold(DriveStore drives, int k) {
+    assert 2 <= k && k <= drives.size();
+    List<Fold> folds = new ArrayList<>();
+    for (int f = 0; f < k; f++) {
+      final int fold = f;
+      folds.add(new Fold(drives.filter(i -> i % k != fold),
+          MatchupStats.fromDrives(drives.filter(i -> i % k == fold))));
+    }
+    return folds;
+  }
+
+  /**
+   * Returns the folds that train on each run of {@code numWeeks} consecutive
+   * weeks in the given drives and test on the week that follows. (This is how
+   * the models are used: only past weeks are available to predict the next.)
+   */
+  public static List<Fold> rollingOrigin(DriveStore drives, int numWeeks) {
+    int[] weeks = drives.distinctWeeks();
+    List<Fold> folds = new ArrayList<>();
+    for (int i = 0; i + numWeeks < weeks.length; i++) {
+      folds.add(new Fold(
+          drives.weeks(weeks[i], weeks[i + numWeeks - 1]),
+          MatchupStats.fromDrives(
+              drives.weeks(weeks[i + numWeeks], weeks[i + numWeeks]))));
+    }
+    return folds;
+  }
+
+  /**
+   * Returns the test error of the model for each penalty on each fold. The
+   * penalties must be in decreasing order. The first model of each fold is fit
+   * starting from {@code start}, which should be a model fit to all the drives
+   * with the first penalty so that each fold has little to change. The folds
+   * are evaluated on a pool of {@code threads} threads.
+   */
+  public static Result run(List<Fold> folds, double[] penalties,
+      Fitter fitter, TeamModel start, int threads) {
+    assert folds.size() > 0;
+    for (int k = 1; k < penalties.length; k++)
+      assert penalties[k] <= penalties[k - 1];
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<double[]>> tasks = new ArrayList<>();
+      for (Fold fold : folds)
+        tasks.add(pool.submit(() -> evalFold(fold, penalties, fitter, start)));
+
+      double[][] errors = new double[folds.size()][];
+      for (int f = 0; f < folds.size(); f++)
+        errors[f] = tasks.get(f).join();
+      return new Result(penalties, errors);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Returns the test error for each penalty on the given fold. */
+  private static double[] evalFold(Fold fold, double[] penalties,
+      Fitter fitter, TeamModel start) {
+    double[] errors = new double[penalties.length];
+    TeamModel model = start;
+    for (int k = 0; k < penalties.length; k++) {
+      model = fitter.fit(fold.train, penalties[k], model);
+      errors[k] = model.evalLoss(fold.test, 0.0);
+    }
+    return errors;
+  }
+
+  /** Test errors of each penalty on each fold. */
+  public static final class Result {
+    private final double[] penalties;
+    private final double[][] errors;  // by fold then penalty
+
+    Result(double[] penalties, double[][] errors) {
+      this.penalties = penalties;
+      this.errors = errors;
+    }
+
+    /** Returns the number of penalties. */
+    public int getNumPenalties() { return penalties.length; }
+
+    /** Returns the number of folds. */
+    public int getNumFolds() { return errors.length; }
+
+    /** Returns the penalty with the given index. */
+    public double getPenalty(int k) { return penalties[k]; }
+
+    /** Returns the test error of the given penalty on the given fold. */
+    public double getError(int fold, int k) { return errors[fold][k]; }
+
+    /** Returns the mean over the folds of the test error of this penalty. */
+    public double getMean(int k) {
+      double sum = 0;
+      for (double[] e : errors)
+        sum += e[k];
+      return sum / errors.length;
+    }
+
+    /**
+     * Returns the (sample) standard deviation over the folds of the test error
+     * of this penalty.
+     */
+    public double getStdDev(int k) {
+      if (errors.length < 2)
+        return 0;
+      double mean = getMean(k);
+      double sum = 0;
+      for (double[] e : errors)
+        sum += (e[k] - mean) * (e[k] - mean);
+      return Math.sqrt(sum / (errors.length - 1));
+    }
+
+    /**
+     * Returns the index of the penalty with the smallest mean error. Ties go to
+     * the larger penalty, which gives the simpler model.
+     */
+    public int getBestIndex() {
+      int best = 0;
+      for (int k = 1; k < penalties.length; k++) {
+        if (getMean(k) < getMean(best))
+          best = k;
+      }
+      return best;
+    }
+
+    /** Returns the penalty with the smallest mean error. */
+    public double getBestPenalty() { return penalties[getBestIndex()]; }
+  }
+}
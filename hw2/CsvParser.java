@@ -157,8 +157,31 @@ public class CsvParser implements Iterator<String[]> {
     return colTypes;
   }
 
+  /**
+   * Returns the given columns as a row of CSV text (without a newline) that
+   * {@code parseRow} turns back into the same columns. A column is quoted if
+   * it contains a comma, a quote, or a line break, or if it is the only
+   * column and is empty.
+   */
+  static String formatRow(String... cols) {
+    StringBuilder row = new StringBuilder();
+    for (int i = 0; i < cols.length; i++) {
+      if (i > 0)
+        row.append(',');
+      String col = cols[i];
+      if (col.indexOf(',') >= 0 || col.indexOf('"') >= 0 ||
+          col.indexOf('\n') >= 0 || col.indexOf('\r') >= 0 ||
+          (cols.length == 1 && col.isEmpty())) {
+        row.append('"').append(col.replace("\"", "\"\"")).append('"');
+      } else {
+        row.append(col);
+      }
+    }
+    return row.toString();
+  }
+
   /** Returns the columns in the given row. */
-  private static String[] parseRow(String row) {
+  static String[] parseRow(String row) {
     List<String> cols = new ArrayList<String>();
     int index = 0;
 
@@ -211,6 +234,10 @@ public class CsvParser implements Iterator<String[]> {
       index = (end == row.length()) ? end : end + 1;  // skip ','
     }
 
+    // A comma at the end is followed by an empty column.
+    if (row.endsWith(",") && index == row.length())
+      cols.add("");
+
     return cols.toArray(new String[cols.size()]);
   }
 }
@@ -53,6 +53,24 @@ public class CsvParserTest {
     assertArrayEquals(new String[] {"a", "\"b\"", "c"}, rows.get(0));
   }
 
+  @Test public void testEmptyColumns() {
+    List<String[]> rows = parseRows("a,,c\n,b,\n\"a,\",");
+    assertArrayEquals(new String[] {"a", "", "c"}, rows.get(0));
+    assertArrayEquals(new String[] {"", "b", ""}, rows.get(1));
+    assertArrayEquals(new String[] {"a,", ""}, rows.get(2));
+  }
+
+  @Test public void testFormatRow() {
+    String[][] rows = {
+      {"a", "b,c", "say \"hi\"", ""},
+      {"", "line\nbreak"},
+      {""},
+    };
+    for (String[] cols : rows)
+      assertArrayEquals(cols, CsvParser.parseRow(CsvParser.formatRow(cols)));
+    assertEquals("a,\"b,c\",", CsvParser.formatRow("a", "b,c", ""));
+  }
+
   @Test public void testBadQuote() {
     try { parseRows("a,\"b,c"); fail(); } // no end
     catch (RuntimeException ex) { /* pass */ }
@@ -0,0 +1,143 @@
+package cse417;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Sparse matrix with a row for each drive and a column for each parameter of a
+ * {@code FeatureModel}, whose entries are the values of the features of each
+ * drive. Only the non-zero entries are stored, and they are stored by column,
+ * since the solvers that use this update one column's parameter at a time and
+ * so need the rows in which that column is non-zero.
+ */
+public class DesignMatrix {
+
+  /** Number of rows (drives) and columns (parameters). */
+  private final int numRows;
+  private final int numColumns;
+
+  /**
+   * Entries of column {@code j} are at indexes {@code columnStarts[j]} to
+   * {@code columnStarts[j + 1] - 1} of {@code rows} and {@code values}, in
+   * increasing order of row.
+   */
+  private final int[] columnStarts;
+  private final int[] rows;
+  private final double[] values;
+
+  private DesignMatrix(int numRows, int numColumns, int[] columnStarts,
+      int[] rows, double[] values) {
+    this.numRows = numRows;
+    this.numColumns = numColumns;
+    this.columnStarts = columnStarts;
+    this.rows = rows;
+    this.values = values;
+  }
+
+  /** Collects the non-zero entries of each row as the features add them. */
+  public static final class Row {
+    private int[] columns = new int[16];
+    private double[] values = new double[16];
+    private int count;
+
+    /** Offset and width of the columns of the feature being added. */
+    private int offset;
+    private int width;
+
+    /**
+     * Sets the entry in the given column, numbered within the current feature,
+     * to the given value.
+     */
+    public void add(int column, double value) {
+      assert 0 <= column && column < width;
+      if (count == columns.length) {
+        columns = Arrays.copyOf(columns, 2 * count);
+        values = Arrays.copyOf(values, 2 * count);
+      }
+      columns[count] = offset + column;
+      values[count] = value;
+      count++;
+    }
+  }
+
+  /**
+   * Returns the matrix of the given features of the given drives. The columns
+   * of each feature follow those of the features before it in the list.
+   */
+  public static DesignMatrix fromDrives(List<Drive> drives,
+      List<Feature> features) {
+    int numColumns = 0;
+    for (Feature feature : features)
+      numColumns += feature.getNumColumns();
+
+    // Collect the entries by row and count those in each column.
+    int n = drives.size();
+    int[] rowStarts = new int[n + 1];
+    int[] columnStarts = new int[numColumns + 1];
+    Row row = new Row();
+    for (int i = 0; i < n; i++) {
+      row.offset = 0;
+      for (Feature feature : features) {
+        row.width = feature.getNumColumns();
+        feature.addValues(drives.get(i), row);
+        row.offset += row.width;
+      }
+      rowStarts[i + 1] = row.count;
+    }
+    for (int k = 0; k < row.count; k++)
+      columnStarts[row.columns[k] + 1]++;
+    for (int j = 0; j < numColumns; j++)
+      columnStarts[j + 1] += columnStarts[j];
+
+    // Place the entries by column. Rows are visited in order, so each column
+    // ends up sorted by row.
+    int[] next = Arrays.copyOf(columnStarts, numColumns);
+    int[] rows = new int[row.count];
+    double[] values = new double[row.count];
+    for (int i = 0; i < n; i++) {
+      for (int k = rowStarts[i]; k < rowStarts[i + 1]; k++) {
+        int at = next[row.columns[k]]++;
+        rows[at] = i;
+        values[at] = row.values[k];
+      }
+    }
+    return new DesignMatrix(n, numColumns, columnStarts, rows, values);
+  }
+
+  /** Returns the number of rows (drives). */
+  public int getNumRows() { return numRows; }
+
+  /** Returns the number of columns (parameters). */
+  public int getNumColumns() { return numColumns; }
+
+  /** Returns the number of non-zero entries. */
+  public int getNumNonZeros() { return rows.length; }
+
+  /** Returns the index of the first entry of column j. */
+  int columnStart(int j) { return columnStarts[j]; }
+
+  /** Returns the index after the last entry of column j. */
+  int columnEnd(int j) { return columnStarts[j + 1]; }
+
+  /** Returns the row of the entry at the given index. */
+  int row(int k) { return rows[k]; }
+
+  /** Returns the value of the entry at the given index. */
+  double value(int k) { return values[k]; }
+
+  /**
+   * Stores in {@code out} the product of this matrix and the given
+   * parameters, i.e., the prediction for each row.
+   */
+  public void multiply(double[] params, double[] out) {
+    assert params.length == numColumns && out.length == numRows;
+    Arrays.fill(out, 0);
+    for (int j = 0; j < numColumns; j++) {
+      if (params[j] != 0) {
+        for (int k = columnStarts[j]; k < columnStarts[j + 1]; k++)
+          out[rows[k]] += values[k] * params[j];
+      }
+    }
+  }
+}
@@ -4,6 +4,9 @@ package cse417;
 /** Records information about a drive in an NFL game. */
 public class Drive {
 
+  /** Year of the NFL season or zero if not known. */
+  public final int season;
+
   /** Week of the NFL season. */
   public final int week;
 
@@ -13,19 +16,67 @@ public class Drive {
   /** Name of the team on defense. */
   public final String defense;
 
+  /** Index of the team on offense in the {@code TeamRegistry} used. */
+  public final int offenseId;
+
+  /** Index of the team on defense in the {@code TeamRegistry} used. */
+  public final int defenseId;
+
   /** Average points scored from the starting field position. */
   public final double expPointsAtStart;
 
   /** Average point scored from the ending field position. */
   public final double expPointsAtEnd;
 
-  /** Creates a drive with the given description. */
+  /**
+   * Where the game was played: {@code HOME} if at the offense's stadium,
+   * {@code AWAY} if at the defense's, and {@code NEUTRAL} if at neither or not
+   * known.
+   */
+  public final int venue;
+
+  /** Values of {@code venue}. */
+  public static final int HOME = 1;
+  public static final int NEUTRAL = 0;
+  public static final int AWAY = -1;
+
+  /**
+   * Creates a drive with the given description in an unknown season. The
+   * teams must be in {@code TeamModel.TEAMS}.
+   */
   public Drive(int week, String offense, String defense,
       double expPointsAtStart, double expPointsAtEnd) {
+    this(0, week, offense, defense, TeamModel.indexOf(offense),
+        TeamModel.indexOf(defense), expPointsAtStart, expPointsAtEnd);
+  }
+
+  /**
+   * Creates a drive with the given description, including the indexes of the
+   * teams in whatever {@code TeamRegistry} will be used with it.
+   */
+  public Drive(int season, int week, String offense, String defense,
+      int offenseId, int defenseId, double expPointsAtStart,
+      double expPointsAtEnd) {
+    this(season, week, offense, defense, offenseId, defenseId,
+        expPointsAtStart, expPointsAtEnd, NEUTRAL);
+  }
+
+  /** As above but with the given venue. */
+  public Drive(int season, int week, String offense, String defense,
+      int offenseId, int defenseId, double expPointsAtStart,
+      double expPointsAtEnd, int venue) {
+    assert AWAY <= venue && venue <= HOME;
+    this.season = season;
     this.week = week;
     this.offense = offense;
     this.defense = defense;
+    this.offenseId = offenseId;
+    this.defenseId = defenseId;
     this.expPointsAtStart = expPointsAtStart;
     this.expPointsAtEnd = expPointsAtEnd;
+    this.venue = venue;
   }
+
+  /** Returns the change in expected points from the start to the end. */
+  public double getChange() { return expPointsAtEnd - expPointsAtStart; }
 }
@@ -0,0 +1,607 @@
+package cse417;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Stores drives in columns of primitive values: the week, the indexes of the
+ * offense and defense in a {@code TeamRegistry}, the change in expected
+ * points, and the venue. The drives are sorted by week, so the drives in a
+ * range of weeks are a contiguous range of each column, which {@code weeks}
+ * returns as a view that shares the columns rather than copying them. The
+ * fitters take such views directly.
+ * <p>
+ * Weeks are stored as a "serial week", which is {@code 100 * season + week}
+ * (see {@code serialWeek}), so that drives from several seasons are ordered by
+ * time. For data with no season, this is just the week.
+ * <p>
+ * A store can be written to a compact binary file. Reading that file back
+ * reads it in one piece and bulk-copies each column out of it, which is far
+ * faster than parsing the CSV again. The method {@code open} does this
+ * automatically, rebuilding the binary file whenever it is older than the CSV.
+ */
+public class DriveStore {
+
+  /** First bytes of a binary file written by {@code writeTo}. */
+  private static final int MAGIC = 0x44525653;  // "DRVS"
+
+  /**
+   * Version of the binary file format. Older files can still be read: version
+   * 1 files have no venues, and neither version 1 nor 2 has aliases.
+   */
+  private static final int VERSION = 3;
+
+  /** Multiplier on the season when computing a serial week. */
+  private static final int WEEKS_PER_SEASON = 100;
+
+  /** Teams whose indexes are stored. */
+  private final TeamRegistry teams;
+
+  /** Serial week of each drive. */
+  private final int[] weeks;
+
+  /**
+   * Index of the team on offense in each drive. (These are stored as shorts in
+   * the binary file but as ints here so that they can be used as the index
+   * maps of vector gathers; see {@code LossKernel}.)
+   */
+  private final int[] offenses;
+
+  /** Index of the team on defense in each drive. */
+  private final int[] defenses;
+
+  /** Change in expected points in each drive. */
+  private final double[] changes;
+
+  /** Venue of each drive (see {@code Drive.venue}). */
+  private final byte[] venues;
+
+  /** Index in the columns of the first drive of this store. */
+  private final int start;
+
+  /** Index in the columns after the last drive of this store. */
+  private final int end;
+
+  /** Creates a view of the given columns from {@code start} to {@code end}. */
+  private DriveStore(TeamRegistry teams, int[] weeks, int[] offenses,
+      int[] defenses, double[] changes, byte[] venues, int start, int end) {
+    assert 0 <= start && start <= end && end <= weeks.length;
+    assert teams.size() <= Short.MAX_VALUE;
+    this.teams = teams;
+    this.weeks = weeks;
+    this.offenses = offenses;
+    this.defenses = defenses;
+    this.changes = changes;
+    this.venues = venues;
+    this.start = start;
+    this.end = end;
+  }
+
+  /** Returns the serial week of the given week of the given season. */
+  public static int serialWeek(int season, int week) {
+    assert 0 <= week && week < WEEKS_PER_SEASON;
+    return WEEKS_PER_SEASON * season + week;
+  }
+
+  /** Returns the week of the season of the given serial week. */
+  public static int weekOfSeason(int serialWeek) {
+    return serialWeek % WEEKS_PER_SEASON;
+  }
+
+  /** Returns a store with the given drives between teams in {@code TEAMS}. */
+  public static DriveStore fromDrives(List<Drive> drives) {
+    return fromDrives(drives, TeamRegistry.DEFAULT);
+  }
+
+  /** Returns a store with the given drives between the given teams. */
+  public static DriveStore fromDrives(List<Drive> drives, TeamRegistry teams) {
+    Integer[] order = weekOrder(drives);
+    int n = drives.size();
+    int[] weeks = new int[n];
+    int[] offenses = new int[n];
+    int[] defenses = new int[n];
+    double[] changes = new double[n];
+    byte[] venues = new byte[n];
+    for (int i = 0; i < n; i++) {
+      Drive drive = drives.get(order[i]);
+      weeks[i] = serialWeek(drive);
+      offenses[i] = drive.offenseId;
+      defenses[i] = drive.defenseId;
+      changes[i] = drive.getChange();
+      venues[i] = (byte) drive.venue;
+    }
+    return new DriveStore(
+        teams, weeks, offenses, defenses, changes, venues, 0, n);
+  }
+
+  /**
+   * Returns the given values, one for each of the given drives, in the order
+   * in which {@code fromDrives} stores those drives, or null if
+   * {@code values} is null.
+   */
+  static double[] inStoreOrder(List<Drive> drives, double[] values) {
+    if (values == null)
+      return null;
+    assert values.length == drives.size();
+    Integer[] order = weekOrder(drives);
+    double[] sorted = new double[values.length];
+    for (int i = 0; i < sorted.length; i++)
+      sorted[i] = values[order[i]];
+    return sorted;
+  }
+
+  /**
+   * Returns the indexes of the given drives sorted by serial week. The sort is
+   * stable, so drives in the same week stay in the order given.
+   */
+  private static Integer[] weekOrder(List<Drive> drives) {
+    Integer[] order = new Integer[drives.size()];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> Integer.compare(
+        serialWeek(drives.get(a)), serialWeek(drives.get(b))));
+    return order;
+  }
+
+  /** Returns the serial week of the given drive. */
+  private static int serialWeek(Drive drive) {
+    return serialWeek(drive.season, drive.week);
+  }
+
+  /** As below but with no aliases. */
+  public static DriveStore fromCsv(String fileName) throws IOException {
+    return fromCsv(fileName, Collections.<TeamRegistry.Alias>emptyList());
+  }
+
+  /**
+   * Returns a store containing the drives described in the given CSV file.
+   * After a header row, each row has the offense, defense, week, expected
+   * points at the start and end, and optionally the season and the home team
+   * (which must be the offense or the defense, or empty if neither). The teams
+   * are those named in the file after resolving the given aliases.
+   */
+  public static DriveStore fromCsv(String fileName,
+      Collection<TeamRegistry.Alias> aliases) throws IOException {
+    List<String[]> rows = new ArrayList<String[]>();
+    CsvParser parser = new CsvParser(fileName, true);
+    while (parser.hasNext()) {
+      String[] parts = parser.next();
+      if (parts.length < 5 || parts.length > 7) {
+        throw new RuntimeException(
+            "CSV: expected 5 to 7 columns: " + String.join(",", parts));
+      }
+      rows.add(parts);
+    }
+
+    // Find the teams named in each season.
+    List<String> names = new ArrayList<String>();
+    int[] nameSeasons = new int[2 * rows.size()];
+    for (int i = 0; i < rows.size(); i++) {
+      String[] parts = rows.get(i);
+      names.add(parts[0]);
+      names.add(parts[1]);
+      nameSeasons[2 * i] = nameSeasons[2 * i + 1] = season(parts);
+    }
+    TeamRegistry teams = TeamRegistry.fromNames(names, nameSeasons, aliases);
+
+    List<Drive> drives = new ArrayList<Drive>();
+    for (String[] parts : rows) {
+      try {
+        int season = season(parts);
+        drives.add(new Drive(season, Integer.parseInt(parts[2]),
+            parts[0], parts[1],
+            teams.indexOf(parts[0], season), teams.indexOf(parts[1], season),
+            Double.parseDouble(parts[3]), Double.parseDouble(parts[4]),
+            venue(parts, teams, season)));
+      } catch (NumberFormatException ex) {
+        throw new RuntimeException(
+            "CSV: expecting a number: " + String.join(",", parts));
+      }
+    }
+    return fromDrives(drives, teams);
+  }
+
+  /** Returns the venue of the drive in the given CSV row. */
+  static int venue(String[] parts, TeamRegistry teams, int season) {
+    if (parts.length < 7 || parts[6].isEmpty())
+      return Drive.NEUTRAL;
+    String home = teams.resolve(parts[6], season);
+    if (home.equals(teams.resolve(parts[0], season)))
+      return Drive.HOME;
+    if (home.equals(teams.resolve(parts[1], season)))
+      return Drive.AWAY;
+    throw new RuntimeException(
+        "CSV: home team is not playing: " + String.join(",", parts));
+  }
+
+  /** Returns the season in the given CSV row or zero if none. */
+  static int season(String[] parts) {
+    try {
+      return (parts.length > 5 && !parts[5].isEmpty()) ?
+          Integer.parseInt(parts[5]) : 0;
+    } catch (NumberFormatException ex) {
+      throw new RuntimeException(
+          "CSV: expecting an integer season: " + String.join(",", parts));
+    }
+  }
+
+  /**
+   * Returns a store containing the drives in the given CSV file, reading them
+   * from the binary file {@code cacheName} if that is newer than the CSV and
+   * was written with the same aliases, and otherwise parsing the CSV and
+   * writing the binary file for next time. A binary file that cannot be read
+   * is also replaced.
+   */
+  public static DriveStore open(String csvName, String cacheName,
+      Collection<TeamRegistry.Alias> aliases) throws IOException {
+    File csv = new File(csvName);
+    File cache = new File(cacheName);
+    if (cache.exists() && cache.lastModified() >= csv.lastModified()) {
+      try {
+        DriveStore store = readFrom(cacheName);
+        if (aliasKeys(store.teams.getAliases()).equals(aliasKeys(aliases)))
+          return store;
+      } catch (IOException ex) {
+        // fall through to rebuild the file
+      }
+    }
+
+    DriveStore store = fromCsv(csvName, aliases);
+    store.writeTo(cacheName);
+    return store;
+  }
+
+  /**
+   * Returns a description of each of the given aliases, in sorted order, so
+   * that the same aliases give equal lists.
+   */
+  private static List<String> aliasKeys(
+      Collection<TeamRegistry.Alias> aliases) {
+    List<String> keys = new ArrayList<String>();
+    for (TeamRegistry.Alias a : aliases) {
+      keys.add(a.alias + "\n" + a.team + "\n" + a.firstSeason + "\n" +
+          a.lastSeason);
+    }
+    Collections.sort(keys);
+    return keys;
+  }
+
+  /**
+   * Writes the drives in this store, along with the teams and their aliases,
+   * to the given binary file. The file is written under a temporary name and
+   * then renamed, so an interrupted write never leaves a partial file.
+   */
+  public void writeTo(String fileName) throws IOException {
+    Path target = Paths.get(fileName).toAbsolutePath();
+    Path temp = Files.createTempFile(
+        target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      writeColumnsTo(temp);
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Writes the contents of the binary file described above. */
+  private void writeColumnsTo(Path path) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(teams.size());
+      for (String team : teams.getNames())
+        writeString(out, team);
+      List<TeamRegistry.Alias> aliases = teams.getAliases();
+      out.writeInt(aliases.size());
+      for (TeamRegistry.Alias a : aliases) {
+        writeString(out, a.alias);
+        writeString(out, a.team);
+        out.writeInt(a.firstSeason);
+        out.writeInt(a.lastSeason);
+      }
+      out.writeInt(size());
+      for (int i = start; i < end; i++)
+        out.writeInt(weeks[i]);
+      for (int i = start; i < end; i++)
+        out.writeShort(offenses[i]);
+      for (int i = start; i < end; i++)
+        out.writeShort(defenses[i]);
+      for (int i = start; i < end; i++)
+        out.writeDouble(changes[i]);
+      out.write(venues, start, end - start);
+    }
+  }
+
+  /** Writes the given string as its length and then its UTF-8 bytes. */
+  private static void writeString(DataOutputStream out, String str)
+      throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Returns a store with the drives in a file written by {@code writeTo}.
+   * @throws IOException if the file cannot be read or is not such a file
+   */
+  public static DriveStore readFrom(String fileName) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+    try {
+      return readFrom(buf, fileName);
+    } catch (BufferUnderflowException | IllegalArgumentException |
+        NegativeArraySizeException ex) {
+      throw new IOException("truncated or corrupt drive store file: " +
+          fileName, ex);
+    }
+  }
+
+  /** Returns the store in the given contents of the named binary file. */
+  private static DriveStore readFrom(ByteBuffer buf, String fileName)
+      throws IOException {
+    int version = (buf.remaining() >= 8 && buf.getInt() == MAGIC) ?
+        buf.getInt() : 0;
+    if (version < 1 || version > VERSION)
+      throw new IOException("not a drive store file: " + fileName);
+
+    List<String> names = new ArrayList<String>();
+    int numTeams = buf.getInt();
+    for (int t = 0; t < numTeams; t++)
+      names.add(readString(buf));
+    List<TeamRegistry.Alias> aliases = new ArrayList<TeamRegistry.Alias>();
+    if (version > 2) {
+      int numAliases = buf.getInt();
+      for (int k = 0; k < numAliases; k++) {
+        String alias = readString(buf);
+        String team = readString(buf);
+        int firstSeason = buf.getInt();
+        aliases.add(new TeamRegistry.Alias(
+            alias, team, firstSeason, buf.getInt()));
+      }
+    }
+    TeamRegistry teams = new TeamRegistry(names, aliases);
+
+    int n = buf.getInt();
+    int[] weeks = new int[n];
+    buf.asIntBuffer().get(weeks);
+    buf.position(buf.position() + 4 * n);
+    int[] offenses = readShorts(buf, n);
+    int[] defenses = readShorts(buf, n);
+    double[] changes = new double[n];
+    buf.asDoubleBuffer().get(changes);
+    buf.position(buf.position() + 8 * n);
+    byte[] venues = new byte[n];
+    if (version > 1)
+      buf.get(venues);
+    return new DriveStore(
+        teams, weeks, offenses, defenses, changes, venues, 0, n);
+  }
+
+  /** Returns the next string written by {@code writeString}. */
+  private static String readString(ByteBuffer buf) {
+    byte[] bytes = new byte[buf.getShort()];
+    buf.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Returns the next {@code n} shorts in the buffer, widened to ints. */
+  private static int[] readShorts(ByteBuffer buf, int n) {
+    short[] shorts = new short[n];
+    buf.asShortBuffer().get(shorts);
+    buf.position(buf.position() + 2 * n);
+    int[] ints = new int[n];
+    for (int i = 0; i < n; i++)
+      ints[i] = shorts[i];
+    return ints;
+  }
+
+  /** Returns the teams whose indexes are stored. */
+  public TeamRegistry getTeams() { return teams; }
+
+  /** Returns the number of drives in this store. */
+  public int size() { return end - start; }
+
+  /** Returns the serial week of the i-th drive. */
+  public int week(int i) { return weeks[start + i]; }
+
+  /** Returns the index of the offense in the i-th drive. */
+  public int offense(int i) { return offenses[start + i]; }
+
+  /** Returns the index of the defense in the i-th drive. */
+  public int defense(int i) { return defenses[start + i]; }
+
+  /** Returns the change in expected points in the i-th drive. */
+  public double change(int i) { return changes[start + i]; }
+
+  /** Returns the venue of the i-th drive (see {@code Drive.venue}). */
+  public int venue(int i) { return venues[start + i]; }
+
+  /**
+   * Returns the sum over these drives of the squared difference between the
+   * change and the prediction of the model with the given parameters,
+   * computed by the given kernel.
+   */
+  double sumOfSquaredErrors(LossKernel kernel, double constant,
+      double[] offenseParams, double[] defenseParams) {
+    return kernel.sumOfSquaredErrors(constant, offenseParams, defenseParams,
+        offenses, defenses, changes, start, end);
+  }
+
+  /**
+   * Adds the residual (change minus prediction) of each of these drives to the
+   * sum for its offense and for its defense, and returns the sum of all of the
+   * residuals, computed by the given kernel.
+   */
+  double addResiduals(LossKernel kernel, double constant,
+      double[] offenseParams, double[] defenseParams, double[] offenseSums,
+      double[] defenseSums) {
+    return kernel.addResiduals(constant, offenseParams, defenseParams,
+        offenses, defenses, changes, start, end, offenseSums, defenseSums);
+  }
+
+  /**
+   * As above but with each squared difference multiplied by the weight of its
+   * drive, where {@code weights[i]} is the weight of the i-th drive.
+   */
+  double sumOfSquaredErrors(LossKernel kernel, double constant,
+      double[] offenseParams, double[] defenseParams, double[] weights) {
+    return kernel.sumOfSquaredErrors(constant, offenseParams, defenseParams,
+        offenses, defenses, changes, weights, start, end);
+  }
+
+  /**
+   * As above but with each residual multiplied by the weight of its drive,
+   * where {@code weights[i]} is the weight of the i-th drive.
+   */
+  double addResiduals(LossKernel kernel, double constant,
+      double[] offenseParams, double[] defenseParams, double[] weights,
+      double[] offenseSums, double[] defenseSums) {
+    return kernel.addResiduals(constant, offenseParams, defenseParams,
+        offenses, defenses, changes, weights, start, end, offenseSums,
+        defenseSums);
+  }
+
+  /** Returns the earliest week of any drive. Requires a non-empty store. */
+  public int minWeek() {
+    assert size() > 0;
+    return weeks[start];
+  }
+
+  /** Returns the latest week of any drive. Requires a non-empty store. */
+  public int maxWeek() {
+    assert size() > 0;
+    return weeks[end - 1];
+  }
+
+  /** Returns the distinct (serial) weeks of the drives in increasing order. */
+  public int[] distinctWeeks() {
+    int count = 0;
+    for (int i = start; i < end; i++) {
+      if (i == start || weeks[i] != weeks[i - 1])
+        count++;
+    }
+    int[] distinct = new int[count];
+    count = 0;
+    for (int i = start; i < end; i++) {
+      if (i == start || weeks[i] != weeks[i - 1])
+        distinct[count++] = weeks[i];
+    }
+    return distinct;
+  }
+
+  /**
+   * Returns a weight for each drive that halves every {@code halfLife} weeks
+   * before the last week of these drives, which has weight one. Weeks are
+   * counted among the distinct weeks of the drives, so the gap between
+   * seasons does not count.
+   */
+  public double[] decayWeights(double halfLife) {
+    assert halfLife > 0;
+    double[] weights = new double[size()];
+    int weeksAgo = 0;
+    for (int i = end - 1; i >= start; i--) {
+      if (i < end - 1 && weeks[i] != weeks[i + 1])
+        weeksAgo++;
+      weights[i - start] = Math.pow(0.5, weeksAgo / halfLife);
+    }
+    return weights;
+  }
+
+  /**
+   * Returns a view of the drives in weeks {@code minWeek} to {@code maxWeek}
+   * (inclusive). The view shares the columns of this store.
+   */
+  public DriveStore weeks(int minWeek, int maxWeek) {
+    int from = firstIndexOfWeekAtLeast(minWeek);
+    int to = Math.max(from, firstIndexOfWeekAtLeast(maxWeek + 1));
+    return new DriveStore(
+        teams, weeks, offenses, defenses, changes, venues, from, to);
+  }
+
+  /**
+   * Returns a store with only the drives in weeks of their seasons from 1 to
+   * {@code maxWeek}. Unlike {@code weeks}, this copies the drives kept.
+   */
+  public DriveStore withWeeksOfSeasonAtMost(int maxWeek) {
+    return filter(i -> weekOfSeason(week(i)) <= maxWeek);
+  }
+
+  /**
+   * Returns a store with only the drives {@code i} for which
+   * {@code keep.test(i)} is true. Unlike {@code weeks}, this copies the drives
+   * kept.
+   */
+  public DriveStore filter(IntPredicate keep) {
+    int n = 0;
+    for (int i = 0; i < size(); i++) {
+      if (keep.test(i))
+        n++;
+    }
+
+    int[] newWeeks = new int[n];
+    int[] newOffenses = new int[n];
+    int[] newDefenses = new int[n];
+    double[] newChanges = new double[n];
+    byte[] newVenues = new byte[n];
+    n = 0;
+    for (int i = 0; i < size(); i++) {
+      if (keep.test(i)) {
+        newWeeks[n] = weeks[start + i];
+        newOffenses[n] = offenses[start + i];
+        newDefenses[n] = defenses[start + i];
+        newChanges[n] = changes[start + i];
+        newVenues[n] = venues[start + i];
+        n++;
+      }
+    }
+    return new DriveStore(teams, newWeeks, newOffenses, newDefenses,
+        newChanges, newVenues, 0, n);
+  }
+
+  /** Returns the first index in the columns with week at least the given. */
+  private int firstIndexOfWeekAtLeast(int week) {
+    // Inv: weeks[start..lo-1] < week <= weeks[hi..end-1]
+    int lo = start, hi = end;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (weeks[mid] < week) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Returns the drives in this store as {@code Drive} objects. Since only the
+   * change in expected points is stored, each starts at zero expected points.
+   */
+  public List<Drive> toDrives() {
+    List<Drive> drives = new ArrayList<Drive>(size());
+    for (int i = start; i < end; i++) {
+      drives.add(new Drive(weeks[i] / WEEKS_PER_SEASON, weekOfSeason(weeks[i]),
+          teams.getName(offenses[i]), teams.getName(defenses[i]),
+          offenses[i], defenses[i], 0, changes[i], venues[i]));
+    }
+    return drives;
+  }
+}
@@ -0,0 +1,201 @@
+package cse417;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.nio.file.Files;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class DriveStoreTest {
+
+  private static final List<Drive> DRIVES = Arrays.asList(
+      new Drive(3, "SEA", "NE", 1.0, 3.0),
+      new Drive(1, "NE", "SEA", 2.0, 1.0),
+      new Drive(2, "DEN", "CAR", 0.5, 0.0),
+      new Drive(3, "CAR", "DEN", 0.0, 7.0));
+
+  @Test
+  public void testSortedByWeek() {
+    DriveStore store = DriveStore.fromDrives(DRIVES);
+    assertEquals(4, store.size());
+    assertEquals(1, store.minWeek());
+    assertEquals(3, store.maxWeek());
+    assertEquals(TeamModel.indexOf("NE"), store.offense(0));
+    assertEquals(-0.5, store.change(1), 1e-12);
+    assertEquals(2.0, store.change(2), 1e-12);
+    assertEquals(7.0, store.change(3), 1e-12);
+  }
+
+  @Test
+  public void testWeeks() {
+    DriveStore store = DriveStore.fromDrives(DRIVES);
+    assertEquals(3, store.weeks(2, 3).size());
+    assertEquals(2, store.weeks(3, 9).size());
+    assertEquals(0, store.weeks(4, 9).size());
+    assertEquals(0, store.weeks(3, 2).size());
+
+    DriveStore week2 = store.weeks(1, 3).weeks(2, 2);
+    assertEquals(1, week2.size());
+    assertEquals(TeamModel.indexOf("CAR"), week2.defense(0));
+    assertEquals("CAR", week2.toDrives().get(0).defense);
+  }
+
+  @Test
+  public void testLossKernels() {
+    List<Drive> drives = Benchmarks.makeDrives(1003, 4);
+    DriveStore store = DriveStore.fromDrives(drives);
+    TeamModel model = CoordinateDescent.findBestModel(
+        drives, 0.01, 1e-3, new TeamModel(), FitListener.NONE);
+
+    for (LossKernel kernel : new LossKernel[] {
+        LossKernel.SCALAR, LossKernel.BEST }) {
+      assertEquals(model.evalLoss(drives, 0.01),
+          model.evalLoss(store, 0.01, kernel), 1e-9);
+      assertEquals(model.evalLoss(drives, 0.01),
+          model.evalLoss(store.weeks(1, 16), 0.01, kernel), 1e-9);
+
+      TeamModel expected = model.evalLossDerivative(drives);
+      TeamModel actual = model.evalLossDerivative(store, kernel);
+      assertEquals(0, actual.addScaledBy(-1, expected).norm0(), 1e-9);
+
+      // Weights are indexed from the first drive of a view, not the columns.
+      DriveStore view = store.weeks(2, 9);
+      List<Drive> viewDrives = view.toDrives();
+      double[] weights = view.decayWeights(3);
+      assertEquals(model.evalLoss(viewDrives, weights, 0.01),
+          model.evalLoss(view, weights, 0.01, kernel), 1e-9);
+      expected = model.evalLossDerivative(viewDrives, weights);
+      actual = model.evalLossDerivative(view, weights, kernel);
+      assertEquals(0, actual.addScaledBy(-1, expected).norm0(), 1e-9);
+    }
+  }
+
+  @Test
+  public void testDecayWeights() {
+    DriveStore store = DriveStore.fromDrives(DRIVES);
+    assertArrayEquals(new double[] { 0.25, 0.5, 1, 1 },
+        store.decayWeights(1), 1e-12);
+    assertArrayEquals(new double[] { 0.5, 1 },
+        store.weeks(1, 2).decayWeights(1), 1e-12);
+  }
+
+  @Test
+  public void testEvalLoss() {
+    TeamModel model = new TeamModel().setConstant(0.5).setOffense("SEA", 1.0);
+    assertEquals(model.evalLoss(DRIVES, 0.1),
+        model.evalLoss(DriveStore.fromDrives(DRIVES), 0.1), 1e-12);
+
+    // Weights are given in the order of the list and must be sorted with it.
+    double[] weights = { 1, 2, 3, 4 };
+    DriveStore store = DriveStore.fromDrives(DRIVES);
+    double[] sorted = DriveStore.inStoreOrder(DRIVES, weights);
+    assertArrayEquals(new double[] { 2, 3, 1, 4 }, sorted, 0);
+    assertEquals(model.evalLoss(DRIVES, weights, 0.1),
+        model.evalLoss(store, sorted, 0.1), 1e-12);
+    TeamModel expected = model.evalLossDerivative(DRIVES, weights);
+    TeamModel actual = model.evalLossDerivative(store, sorted);
+    assertEquals(0, actual.addScaledBy(-1, expected).norm0(), 1e-12);
+  }
+
+  @Test
+  public void testFilter() {
+    DriveStore odd = DriveStore.fromDrives(DRIVES).weeks(2, 3)
+        .filter(i -> i % 2 == 1);
+    assertEquals(1, odd.size());
+    assertEquals(3, odd.minWeek());
+    assertEquals(TeamModel.indexOf("SEA"), odd.offense(0));
+    assertEquals(2.0, odd.change(0), 1e-12);
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File file = File.createTempFile("drives", ".bin");
+    try {
+      DriveStore.fromDrives(DRIVES).weeks(2, 3).writeTo(file.getPath());
+      DriveStore store = DriveStore.readFrom(file.getPath());
+      assertEquals(3, store.size());
+      assertEquals(2, store.minWeek());
+      assertEquals(TeamModel.indexOf("SEA"), store.offense(1));
+      assertEquals(TeamModel.indexOf("DEN"), store.defense(2));
+      assertEquals(7.0, store.change(2), 1e-12);
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testVenues() throws IOException {
+    File csv = File.createTempFile("drives", ".csv");
+    File bin = File.createTempFile("drives", ".bin");
+    try {
+      try (PrintStream out = new PrintStream(csv)) {
+        out.println("offense,defense,week,exp_start,exp_end,season,home");
+        out.println("SEA,NE,1,1.0,3.0,2016,SEA");
+        out.println("NE,SEA,1,2.0,1.0,2016,SEA");
+        out.println("DEN,CAR,2,0.5,0.0,,");
+      }
+
+      DriveStore.fromCsv(csv.getPath()).writeTo(bin.getPath());
+      DriveStore store = DriveStore.readFrom(bin.getPath());
+      assertEquals(3, store.size());
+      assertEquals(Drive.NEUTRAL, store.venue(0));
+      assertEquals(Drive.HOME, store.venue(1));
+      assertEquals(Drive.AWAY, store.venue(2));
+      assertEquals(Drive.AWAY, store.toDrives().get(2).venue);
+    } finally {
+      csv.delete();
+      bin.delete();
+    }
+  }
+
+  @Test
+  public void testOpenChecksCache() throws IOException {
+    File csv = File.createTempFile("drives", ".csv");
+    File bin = File.createTempFile("drives", ".bin");
+    try {
+      try (PrintStream out = new PrintStream(csv)) {
+        out.println("offense,defense,week,exp_start,exp_end,season");
+        out.println("SD,NE,1,1.0,3.0,2016");
+      }
+      bin.delete();
+      List<TeamRegistry.Alias> none = Collections.emptyList();
+      List<TeamRegistry.Alias> aliases = Collections.singletonList(
+          new TeamRegistry.Alias("SD", "LAC", 1961, 2016));
+      assertEquals(Arrays.asList("NE", "SD"),
+          DriveStore.open(csv.getPath(), bin.getPath(), none)
+          .getTeams().getNames());
+
+      // The cache was written without aliases, so it is rebuilt, and the
+      // aliases are read back from the new one.
+      assertEquals(Arrays.asList("LAC", "NE"),
+          DriveStore.open(csv.getPath(), bin.getPath(), aliases)
+          .getTeams().getNames());
+      assertEquals("LAC", DriveStore.readFrom(bin.getPath())
+          .getTeams().resolve("SD", 2016));
+
+      // A truncated cache cannot be read, so it is rebuilt as well.
+      byte[] bytes = Files.readAllBytes(bin.toPath());
+      Files.write(bin.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+      try {
+        DriveStore.readFrom(bin.getPath());
+        assertTrue(false);
+      } catch (IOException ex) {
+        // expected
+      }
+      assertEquals(1,
+          DriveStore.open(csv.getPath(), bin.getPath(), aliases).size());
+      assertEquals(bytes.length, bin.length());
+    } finally {
+      csv.delete();
+      bin.delete();
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package cse417;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+
+
+/**
+ * Updates the model of a {@code RollingWindow} as drives arrive one at a time,
+ * e.g., on standard input or appended to a file by another program during the
+ * games. Each drive is a CSV row in the same format as the input to
+ * {@code TeamModeler}, which starts with a header row. Adding a drive only
+ * updates the statistics of its week, and the model is refit, starting from
+ * the last one, after every {@code refitEvery} drives and at the end of the
+ * input. Since a fit from the statistics takes time proportional to the number
+ * of matchups rather than drives, the work per drive is bounded however long
+ * the stream runs.
+ * <p>
+ * A followed file never ends, so the model is also refit whenever drives have
+ * been added since the last fit and either the oldest of them was added
+ * {@code maxLatencyMillis} ago or a {@code FollowingReader} is waiting for
+ * more text. So no drive waits long for a fit just because fewer than
+ * {@code refitEvery} drives follow it. (Other readers cannot report waiting,
+ * so for them the deadline is only checked as each line arrives.)
+ * <p>
+ * Rows that cannot be parsed, that name teams not in the window, or that hold
+ * drives older than the window are reported and skipped rather than stopping
+ * the stream. Drives after week {@code maxWeek} of a season are expected in
+ * the input, so they are ignored without being reported or counted as
+ * skipped.
+ */
+public class DriveStream {
+
+  /** Receives each model refit to the window. */
+  @FunctionalInterface
+  public interface Output {
+    void modelFit(TeamModel model, int numDrives) throws IOException;
+  }
+
+  /** Milliseconds to wait before checking a followed file for more text. */
+  private static final long POLL_MILLIS = 250;
+
+  /** Window to which the drives are added. */
+  private final RollingWindow window;
+
+  /** Last week of each season whose drives are used. */
+  private final int maxWeek;
+
+  /** Arguments passed to {@code RollingWindow.fit}. */
+  private final double penalty;
+  private final double tol;
+  private final FitListener listener;
+
+  /** Number of drives added between fits. */
+  private final int refitEvery;
+
+  /** Longest time in nanoseconds that an added drive waits for a fit. */
+  private final long maxLatencyNanos;
+
+  /** Numbers of drives added and skipped so far. */
+  private int numDrives;
+  private int numSkipped;
+
+  /** Number of drives added since the last fit. */
+  private int sinceFit;
+
+  /** Value of {@code System.nanoTime} when the oldest unfit drive was added. */
+  private long oldestUnfit;
+
+  /**
+   * Creates a stream that adds drives to the given window and refits it with
+   * the given arguments after every {@code refitEvery} drives or once a drive
+   * has waited {@code maxLatencyMillis}, as described above.
+   */
+  public DriveStream(RollingWindow window, int maxWeek, double penalty,
+      double tol, int refitEvery, long maxLatencyMillis,
+      FitListener listener) {
+    assert refitEvery > 0 && maxLatencyMillis >= 0;
+    this.window = window;
+    this.maxWeek = maxWeek;
+    this.penalty = penalty;
+    this.tol = tol;
+    this.refitEvery = refitEvery;
+    this.maxLatencyNanos = maxLatencyMillis * 1000000;
+    this.listener = listener;
+  }
+
+  /** Returns the number of drives added to the window so far. */
+  public int getNumDrives() { return numDrives; }
+
+  /**
+   * Returns the number of rows reported and skipped so far (not including
+   * the header row or drives after {@code maxWeek}).
+   */
+  public int getNumSkipped() { return numSkipped; }
+
+  /**
+   * Adds the drives in the given text, after its header row, to the window,
+   * passing each refit model to {@code out}, until the end of the text. A
+   * drive is added as soon as its line is complete, without waiting for the
+   * next one.
+   */
+  public void run(Reader in, Output out) throws IOException {
+    if (in instanceof FollowingReader) {
+      ((FollowingReader) in).idleListener = () -> {
+        if (sinceFit > 0)
+          refit(out);
+      };
+    }
+    try {
+      BufferedReader lines = new BufferedReader(in);
+      lines.readLine();  // header, as in DriveStore.fromCsv
+      String line;
+      while ((line = lines.readLine()) != null) {
+        if (line.isEmpty() || !add(line))
+          continue;
+        if (sinceFit++ == 0)
+          oldestUnfit = System.nanoTime();
+        if (sinceFit == refitEvery ||
+            System.nanoTime() - oldestUnfit >= maxLatencyNanos)
+          refit(out);
+      }
+      if (sinceFit > 0)
+        refit(out);
+    } finally {
+      if (in instanceof FollowingReader)
+        ((FollowingReader) in).idleListener = null;
+    }
+  }
+
+  /** Refits the window and passes the model to {@code out}. */
+  private void refit(Output out) throws IOException {
+    out.modelFit(window.fit(penalty, tol, listener), numDrives);
+    sinceFit = 0;
+  }
+
+  /**
+   * Adds the drive in the given CSV row to the window and returns true, or
+   * returns false if the row was skipped or ignored.
+   */
+  boolean add(String line) {
+    String[] parts = CsvParser.parseRow(line);
+    if (parts.length < 5 || parts.length > 7)
+      return skip("expected 5 to 7 columns", line);
+
+    Drive drive;
+    try {
+      int season = DriveStore.season(parts);
+      TeamRegistry teams = window.getTeams();
+      drive = new Drive(season, Integer.parseInt(parts[2]), parts[0], parts[1],
+          teams.indexOf(parts[0], season), teams.indexOf(parts[1], season),
+          Double.parseDouble(parts[3]), Double.parseDouble(parts[4]),
+          DriveStore.venue(parts, teams, season));
+    } catch (NumberFormatException ex) {
+      return skip("expecting a number", line);
+    } catch (RuntimeException ex) {
+      return skip(ex.getMessage(), line);
+    }
+
+    if (drive.week > maxWeek)
+      return false;  // not used, as in the other modes
+    if (!window.add(drive))
+      return skip("older than the window", line);
+    numDrives += 1;
+    return true;
+  }
+
+  /** Reports that the given line was skipped and returns false. */
+  private boolean skip(String reason, String line) {
+    System.err.printf("Skipping drive (%s): %s\n", reason, line);
+    numSkipped += 1;
+    return false;
+  }
+
+  /** Called by a {@code FollowingReader} each time it waits for more text. */
+  @FunctionalInterface
+  interface IdleListener {
+    void idle() throws IOException;
+  }
+
+  /**
+   * Reader that follows a file as it grows, like {@code tail -f}: at the end
+   * of the file, it waits for more text rather than ending. So reading only
+   * ends if the thread is interrupted.
+   */
+  public static class FollowingReader extends Reader {
+
+    /** Reader of the file being followed. */
+    private final Reader in;
+
+    /** If not null, told each time this waits for more text. */
+    IdleListener idleListener;
+
+    /** Creates a reader that follows the text from the given reader. */
+    public FollowingReader(Reader in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read(char[] buf, int off, int len) throws IOException {
+      while (true) {
+        int n = in.read(buf, off, len);
+        if (n != -1)
+          return n;
+        if (idleListener != null)
+          idleListener.idle();
+        try {
+          Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException ex) {
+          throw new InterruptedIOException("stopped following the file");
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
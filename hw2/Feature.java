@@ -0,0 +1,91 @@
+package cse417;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A group of columns of the design matrix of a {@code FeatureModel}, each of
+ * which has one parameter in the model. For each drive, a feature gives the
+ * values in its columns, most of which are usually zero. For example, the
+ * offense feature has a column per team, which is one for the team on offense
+ * and zero for the others, so its parameters are the offense ratings.
+ * <p>
+ * The features built in here are the terms of a {@code TeamModel}, from
+ * {@code constant}, {@code offense}, and {@code defense}, along with the
+ * advantage of playing at home. Others can be added by subclassing.
+ */
+public abstract class Feature {
+
+  /** Name shown for this feature, e.g., "Off". */
+  private final String name;
+
+  /** Label of each column, e.g., the name of a team. */
+  private final List<String> labels;
+
+  /** Creates a feature with the given name and a column per label. */
+  protected Feature(String name, List<String> labels) {
+    assert labels.size() > 0;
+    this.name = name;
+    this.labels = labels;
+  }
+
+  /** Returns the name shown for this feature. */
+  public String getName() { return name; }
+
+  /** Returns the number of columns (and parameters) of this feature. */
+  public int getNumColumns() { return labels.size(); }
+
+  /** Returns the label of the given column. */
+  public String getLabel(int column) { return labels.get(column); }
+
+  /**
+   * Adds the non-zero values of this feature for the given drive to its row
+   * by calling {@code row.add}, with columns numbered from zero within this
+   * feature.
+   */
+  public abstract void addValues(Drive drive, DesignMatrix.Row row);
+
+  /** Returns the feature that is one for every drive. */
+  public static Feature constant() {
+    return new Feature("Constant", Collections.singletonList("")) {
+      @Override public void addValues(Drive drive, DesignMatrix.Row row) {
+        row.add(0, 1);
+      }
+    };
+  }
+
+  /** Returns the feature that is one in the column of the offense. */
+  public static Feature offense(TeamRegistry teams) {
+    return new Feature("Off", teams.getNames()) {
+      @Override public void addValues(Drive drive, DesignMatrix.Row row) {
+        row.add(drive.offenseId, 1);
+      }
+    };
+  }
+
+  /**
+   * Returns the feature that is minus one in the column of the defense, so
+   * that, as in {@code TeamModel}, a better defense has a larger parameter.
+   */
+  public static Feature defense(TeamRegistry teams) {
+    return new Feature("Def", teams.getNames()) {
+      @Override public void addValues(Drive drive, DesignMatrix.Row row) {
+        row.add(drive.defenseId, -1);
+      }
+    };
+  }
+
+  /**
+   * Returns the feature that is one when the offense is at home and minus one
+   * when the defense is (see {@code Drive.venue}).
+   */
+  public static Feature homeField() {
+    return new Feature("Home", Collections.singletonList("")) {
+      @Override public void addValues(Drive drive, DesignMatrix.Row row) {
+        if (drive.venue != Drive.NEUTRAL)
+          row.add(0, drive.venue);
+      }
+    };
+  }
+}
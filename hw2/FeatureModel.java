@@ -0,0 +1,239 @@
+package cse417;
+
+import java.io.PrintStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Generalizes {@code TeamModel} to predict the change in expected points of
+ * each drive as a linear function of any list of {@code Feature}s of the
+ * drive, with one parameter per column of each feature. The loss function is
+ * the same: the (weighted) mean squared error plus the penalty times the L1
+ * norm of the parameters.
+ * <p>
+ * The model with the constant, offense, and defense features, in that order,
+ * is a {@code TeamModel} (see {@code standard}, {@code fromTeamModel}, and
+ * {@code toTeamModel}). Other features, such as home-field advantage, are
+ * added after those. Models are fit by {@code CoordinateDescent} from the
+ * {@code DesignMatrix} of the features of the drives.
+ */
+public class FeatureModel {
+
+  /** Teams by which the features with a column per team are indexed. */
+  private final TeamRegistry teams;
+
+  /** Features whose parameters are in this model. */
+  private final List<Feature> features;
+
+  /** Index of the first column of each feature. */
+  private final int[] offsets;
+
+  /** Parameter for each column of each feature. */
+  private final double[] params;
+
+  /**
+   * Creates a model of the given features, whose columns for teams (if any)
+   * are those of the given teams, with all parameters zero.
+   */
+  public FeatureModel(TeamRegistry teams, List<Feature> features) {
+    this.teams = teams;
+    this.features = new ArrayList<Feature>(features);
+    this.offsets = new int[features.size()];
+    int numColumns = 0;
+    for (int f = 0; f < features.size(); f++) {
+      offsets[f] = numColumns;
+      numColumns += features.get(f).getNumColumns();
+    }
+    this.params = new double[numColumns];
+  }
+
+  /**
+   * Returns the model with the features of a {@code TeamModel} of the given
+   * teams, followed by the given extra features, with all parameters zero.
+   */
+  public static FeatureModel standard(TeamRegistry teams, Feature... extra) {
+    List<Feature> features = new ArrayList<Feature>();
+    features.add(Feature.constant());
+    features.add(Feature.offense(teams));
+    features.add(Feature.defense(teams));
+    features.addAll(Arrays.asList(extra));
+    return new FeatureModel(teams, features);
+  }
+
+  /** Returns the standard model with the parameters of the given model. */
+  public static FeatureModel fromTeamModel(TeamModel model) {
+    FeatureModel result = standard(model.getTeams());
+    result.params[0] = model.getConstant();
+    for (int t = 0; t < model.getNumTeams(); t++) {
+      result.set(1, t, model.getOffense(t));
+      result.set(2, t, model.getDefense(t));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the {@code TeamModel} with the parameters of the first three
+   * features, which must be those of {@code standard}. Any other features
+   * are left out.
+   */
+  public TeamModel toTeamModel() {
+    assert features.size() >= 3 && params.length >= 1 + 2 * teams.size();
+    TeamModel model = new TeamModel(teams);
+    model.setConstant(params[0]);
+    for (int t = 0; t < teams.size(); t++) {
+      model.setOffense(t, get(1, t));
+      model.setDefense(t, get(2, t));
+    }
+    return model;
+  }
+
+  /** Returns a copy of this model. */
+  public FeatureModel copy() {
+    FeatureModel copy = new FeatureModel(teams, features);
+    System.arraycopy(params, 0, copy.params, 0, params.length);
+    return copy;
+  }
+
+  /** Returns the teams by which features are indexed. */
+  public TeamRegistry getTeams() { return teams; }
+
+  /** Returns the features whose parameters are in this model. */
+  public List<Feature> getFeatures() { return features; }
+
+  /** Returns the total number of parameters (columns of the features). */
+  public int getNumParameters() { return params.length; }
+
+  /** Returns the parameter for the given column of the given feature. */
+  public double get(int feature, int column) {
+    assert 0 <= column && column < features.get(feature).getNumColumns();
+    return params[offsets[feature] + column];
+  }
+
+  /** Sets the parameter for the given column of the given feature. */
+  public FeatureModel set(int feature, int column, double value) {
+    assert 0 <= column && column < features.get(feature).getNumColumns();
+    params[offsets[feature] + column] = value;
+    return this;
+  }
+
+  /** Returns the parameter of the given column of the design matrix. */
+  double getParameter(int column) { return params[column]; }
+
+  /** Sets the parameter of the given column of the design matrix. */
+  void setParameter(int column, double value) { params[column] = value; }
+
+  /** Returns the design matrix of this model's features of the drives. */
+  public DesignMatrix designMatrix(List<Drive> drives) {
+    return DesignMatrix.fromDrives(drives, features);
+  }
+
+  /** Stores in {@code out} the prediction for each row of the matrix. */
+  public void predict(DesignMatrix matrix, double[] out) {
+    matrix.multiply(params, out);
+  }
+
+  /** Returns the L1 norm of the parameters. */
+  public double norm1() {
+    double s = 0;
+    for (double p : params)
+      s += Math.abs(p);
+    return s;
+  }
+
+  /** Returns the largest change in any parameter from the other model. */
+  public double maxDifference(FeatureModel other) {
+    assert params.length == other.params.length;
+    double max = 0;
+    for (int j = 0; j < params.length; j++)
+      max = Math.max(max, Math.abs(params[j] - other.params[j]));
+    return max;
+  }
+
+  /**
+   * Returns the loss of this model on the drives with the given design matrix
+   * and changes, with the given weight on each drive (or one if null).
+   */
+  public double evalLoss(DesignMatrix matrix, double[] changes,
+      double[] weights, double penalty) {
+    double[] predictions = new double[matrix.getNumRows()];
+    predict(matrix, predictions);
+    double loss = 0;
+    double totalWeight = 0;
+    for (int i = 0; i < predictions.length; i++) {
+      double w = (weights != null) ? weights[i] : 1;
+      double error = changes[i] - predictions[i];
+      loss += w * error * error;
+      totalWeight += w;
+    }
+    return loss / totalWeight + penalty * norm1();
+  }
+
+  /**
+   * Returns the weighted mean squared residual of this model over the drives
+   * with each team on offense (in row 0) and on defense (in row 1), given the
+   * design matrix of the drives and the weight of each (or null for weights
+   * of one). A team with no drives on one side is given the mean over all of
+   * the drives.
+   */
+  public double[][] teamVariances(List<Drive> drives, DesignMatrix matrix,
+      double[] weights) {
+    double[] predictions = new double[drives.size()];
+    predict(matrix, predictions);
+    double[][] sums = new double[2][teams.size()];
+    double[][] totals = new double[2][teams.size()];
+    double sum = 0;
+    double total = 0;
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      double w = (weights != null) ? weights[i] : 1;
+      double error = drive.getChange() - predictions[i];
+      sums[0][drive.offenseId] += w * error * error;
+      sums[1][drive.defenseId] += w * error * error;
+      totals[0][drive.offenseId] += w;
+      totals[1][drive.defenseId] += w;
+      sum += w * error * error;
+      total += w;
+    }
+
+    for (int side = 0; side < 2; side++) {
+      for (int t = 0; t < teams.size(); t++) {
+        sums[side][t] = (totals[side][t] > 0) ?
+            sums[side][t] / totals[side][t] : sum / total;
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Prints a description of this model to the given writer: first each
+   * feature with one column, and then a table with a row for each column of
+   * the features with more (which are assumed to be indexed by team).
+   */
+  public void printTo(PrintStream out) {
+    List<Integer> tableFeatures = new ArrayList<Integer>();
+    for (int f = 0; f < features.size(); f++) {
+      if (features.get(f).getNumColumns() == 1) {
+        out.printf("%s: %5.2f\n", features.get(f).getName(), get(f, 0));
+      } else {
+        tableFeatures.add(f);
+      }
+    }
+    if (tableFeatures.isEmpty())
+      return;
+
+    Feature first = features.get(tableFeatures.get(0));
+    out.print("\n   ");
+    for (int f : tableFeatures)
+      out.printf(" %5s", features.get(f).getName());
+    out.println();
+    for (int c = 0; c < first.getNumColumns(); c++) {
+      out.printf("%3s", first.getLabel(c));
+      for (int f : tableFeatures)
+        out.printf(" %5.2f", get(f, c));
+      out.println();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package cse417;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static cse417.TeamModel.TEAMS;
+
+
+public class FeatureModelTest {
+
+  /** Returns the change in each drive. */
+  private static double[] changes(List<Drive> drives) {
+    double[] changes = new double[drives.size()];
+    for (int i = 0; i < drives.size(); i++)
+      changes[i] = drives.get(i).getChange();
+    return changes;
+  }
+
+  @Test
+  public void testDesignMatrix() {
+    List<Drive> drives = new ArrayList<Drive>();
+    drives.add(new Drive(0, 1, "SEA", "NE", TeamModel.indexOf("SEA"),
+        TeamModel.indexOf("NE"), 0.0, 1.0, Drive.AWAY));
+    drives.add(new Drive(1, "DEN", "CAR", 0.0, 2.0));
+    FeatureModel model = FeatureModel.standard(
+        TeamRegistry.DEFAULT, Feature.homeField());
+    DesignMatrix matrix = model.designMatrix(drives);
+    assertEquals(2, matrix.getNumRows());
+    assertEquals(2 + 2 * TEAMS.size(), matrix.getNumColumns());
+    assertEquals(7, matrix.getNumNonZeros());
+
+    model.set(0, 0, 0.5).set(1, TeamModel.indexOf("SEA"), 1.0)
+        .set(2, TeamModel.indexOf("NE"), 0.25).set(3, 0, 0.125);
+    double[] predictions = new double[2];
+    model.predict(matrix, predictions);
+    assertEquals(0.5 + 1.0 - 0.25 - 0.125, predictions[0], 1e-12);
+    assertEquals(0.5, predictions[1], 1e-12);
+  }
+
+  @Test
+  public void testStandardModelMatchesTeamModel() {
+    List<Drive> drives = Benchmarks.makeDrives(800, 21);
+    double[] weights = new double[drives.size()];
+    Random rand = new Random(5);
+    for (int i = 0; i < weights.length; i++)
+      weights[i] = rand.nextDouble();
+
+    TeamModel expected = CoordinateDescent.findBestModel(drives, weights,
+        0.01, 1e-9, new TeamModel(), FitListener.NONE);
+    FeatureModel start = FeatureModel.standard(TeamRegistry.DEFAULT);
+    FeatureModel actual = CoordinateDescent.findBestModel(
+        start.designMatrix(drives), changes(drives), weights, 0.01, 1e-9,
+        start, FitListener.NONE);
+    assertEquals(0, actual.toTeamModel().addScaledBy(-1, expected).norm0(),
+        1e-6);
+    assertEquals(expected.evalLoss(drives, weights, 0.01),
+        actual.evalLoss(actual.designMatrix(drives), changes(drives), weights,
+            0.01), 1e-9);
+
+    FeatureModel roundTrip = FeatureModel.fromTeamModel(expected);
+    assertEquals(0, roundTrip.maxDifference(actual), 1e-6);
+  }
+
+  @Test
+  public void testFindsHomeFieldAdvantage() {
+    Random rand = new Random(8);
+    List<Drive> drives = new ArrayList<Drive>();
+    for (int i = 0; i < 20000; i++) {
+      int off = rand.nextInt(TEAMS.size());
+      int def = (off + 1 + rand.nextInt(TEAMS.size() - 1)) % TEAMS.size();
+      int venue = rand.nextInt(3) - 1;
+      double change = 0.3 + 0.4 * venue + 0.5 * rand.nextGaussian();
+      drives.add(new Drive(0, 1, TEAMS.get(off), TEAMS.get(def), off, def,
+          0, change, venue));
+    }
+
+    FeatureModel model = FeatureModel.standard(
+        TeamRegistry.DEFAULT, Feature.homeField());
+    model = CoordinateDescent.findBestModel(model.designMatrix(drives),
+        changes(drives), null, 0.0, 1e-6, model, FitListener.NONE);
+    assertEquals(0.4, model.get(3, 0), 0.02);
+
+    double[][] variances = model.teamVariances(
+        drives, model.designMatrix(drives), null);
+    for (int t = 0; t < TEAMS.size(); t++) {
+      assertEquals(0.25, variances[0][t], 0.05);
+      assertEquals(0.25, variances[1][t], 0.05);
+    }
+  }
+}
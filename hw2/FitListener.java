@@ -0,0 +1,66 @@
+package cse417;
+
+
+/**
+ * Receives progress reports from the methods that fit a {@code TeamModel}. A
+ * fit consists of sweeps, each of which updates every parameter (or, for
+ * gradient methods, takes one step in all of them), and it finishes once the
+ * change made by a sweep is small enough.
+ * <p>
+ * Every method has an empty default, so a listener need only implement the
+ * reports it wants, and {@code NONE} costs next to nothing. A listener may be
+ * shared by fits running on different threads, so implementations must be
+ * thread-safe.
+ */
+public interface FitListener {
+
+  /** Listener that ignores all reports. */
+  FitListener NONE = new FitListener() {};
+
+  /**
+   * Kinds of parameters reported by {@code parameterChanged}. Parameters of a
+   * {@code FeatureModel} are all reported as {@code FEATURE}.
+   */
+  enum Parameter { OFFENSE, DEFENSE, CONSTANT, FEATURE }
+
+  /**
+   * Called when a fit of a model of the given teams starts, with the name of
+   * the method and the penalty.
+   */
+  default void fitStarted(String method, TeamRegistry teams, double penalty) {}
+
+  /**
+   * Called when one parameter is given a new value during a sweep. The team is
+   * the index of the team, or -1 for the constant. For a {@code FEATURE}, it
+   * is instead the index of the parameter's column in the design matrix.
+   */
+  default void parameterChanged(Parameter kind, int team, double value) {}
+
+  /**
+   * Called at the end of each sweep with its number (starting at 1), the
+   * nanoseconds it took, the L0 norm of the change it made to the model, and
+   * the number of times the full loss function has been evaluated so far.
+   */
+  default void sweepFinished(int sweep, long nanos, double change,
+      long lossEvaluations) {}
+
+  /**
+   * Called when the momentum of an accelerated method is reset because the
+   * step it gave in the given sweep increased the loss. That sweep is then
+   * redone without momentum.
+   */
+  default void momentumRestarted(int sweep) {}
+
+  /**
+   * Called when a fit finishes with the number of sweeps, the number of loss
+   * evaluations, and the nanoseconds the whole fit took.
+   */
+  default void fitFinished(int sweeps, long lossEvaluations, long nanos) {}
+
+  /**
+   * Called by a search for the penalty giving a desired number of non-zero
+   * parameters after it fits a model with the given penalty, with the number
+   * of non-zero parameters in that model.
+   */
+  default void penaltyTried(double penalty, int numNonZero) {}
+}
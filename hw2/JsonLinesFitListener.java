@@ -0,0 +1,72 @@
+package cse417;
+
+import java.io.PrintStream;
+
+
+/**
+ * Listener that writes one JSON object per line for the start of each fit,
+ * the end of each sweep, each momentum restart, the end of each fit, and
+ * each penalty tried by a search. (Individual parameter updates are not
+ * written.) Each object has an {@code "event"} field naming the report, a
+ * {@code "thread"} field so that the lines of fits running in parallel can be
+ * told apart, and a field for each argument of the report. Lines are written
+ * whole, even from several threads, and each is flushed as it is written, so
+ * that a file can be watched during a long fit.
+ */
+public class JsonLinesFitListener implements FitListener {
+
+  /** Stream to which the lines are written. */
+  private final PrintStream out;
+
+  /** Creates a listener that writes to the given stream. */
+  public JsonLinesFitListener(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void fitStarted(String method, TeamRegistry teams, double penalty) {
+    write(String.format("\"event\":\"start\",\"method\":\"%s\",\"teams\":%d," +
+        "\"penalty\":%s", method, teams.size(), penalty));
+  }
+
+  @Override
+  public void sweepFinished(int sweep, long nanos, double change,
+      long lossEvaluations) {
+    write(String.format("\"event\":\"sweep\",\"sweep\":%d,\"nanos\":%d," +
+        "\"change\":%s,\"lossEvaluations\":%d", sweep, nanos, number(change),
+        lossEvaluations));
+  }
+
+  @Override
+  public void momentumRestarted(int sweep) {
+    write(String.format("\"event\":\"restart\",\"sweep\":%d", sweep));
+  }
+
+  @Override
+  public void fitFinished(int sweeps, long lossEvaluations, long nanos) {
+    write(String.format("\"event\":\"finish\",\"sweeps\":%d," +
+        "\"lossEvaluations\":%d,\"nanos\":%d", sweeps, lossEvaluations, nanos));
+  }
+
+  @Override
+  public void penaltyTried(double penalty, int numNonZero) {
+    write(String.format("\"event\":\"penalty\",\"penalty\":%s," +
+        "\"nonZero\":%d", penalty, numNonZero));
+  }
+
+  /** Writes an object with the given fields and the current thread. */
+  private void write(String fields) {
+    String line = "{\"thread\":" + Thread.currentThread().getId() + "," +
+        fields + "}";
+    synchronized (out) {
+      out.println(line);
+      out.flush();
+    }
+  }
+
+  /** Returns the given number as JSON, which has no infinities. */
+  private static String number(double value) {
+    return Double.isInfinite(value) || Double.isNaN(value) ?
+        "null" : Double.toString(value);
+  }
+}
@@ -0,0 +1,139 @@
+package cse417;
+
+
+/**
+ * Computes the sums over drives, stored in columns as in {@code DriveStore},
+ * that are needed to evaluate the loss function and its derivative. The model
+ * predicts a change of {@code constant + offenseParams[offenses[i]] -
+ * defenseParams[defenses[i]]} for drive {@code i}.
+ * <p>
+ * {@code SCALAR} is a simple loop. {@code BEST} is a kernel using the
+ * (incubating) JDK Vector API if the class {@code VectorLossKernel} is on the
+ * class path and the module {@code jdk.incubator.vector} is available (i.e.,
+ * the JVM was started with {@code --add-modules jdk.incubator.vector}), and
+ * {@code SCALAR} otherwise. The vector kernel is loaded by reflection so that
+ * this code compiles and runs without that module. Setting the system property
+ * {@code cse417.vector} to {@code false} also selects {@code SCALAR}.
+ */
+public interface LossKernel {
+
+  /**
+   * Returns the sum over drives {@code from} to {@code to - 1} of the square of
+   * the change minus the prediction.
+   */
+  double sumOfSquaredErrors(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      int from, int to);
+
+  /**
+   * Adds the residual (change minus prediction) of each of drives {@code from}
+   * to {@code to - 1} to {@code offenseSums} at the index of its offense and
+   * to {@code defenseSums} at the index of its defense, and returns the sum of
+   * all of the residuals.
+   */
+  double addResiduals(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      int from, int to, double[] offenseSums, double[] defenseSums);
+
+  /**
+   * As {@code sumOfSquaredErrors} above but with each square multiplied by
+   * the weight of its drive, which for drive {@code i} is
+   * {@code weights[i - from]}.
+   */
+  double sumOfSquaredErrors(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      double[] weights, int from, int to);
+
+  /**
+   * As {@code addResiduals} above but with each residual multiplied by the
+   * weight of its drive, which for drive {@code i} is
+   * {@code weights[i - from]}.
+   */
+  double addResiduals(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      double[] weights, int from, int to, double[] offenseSums,
+      double[] defenseSums);
+
+  /** Kernel that computes the sums with a scalar loop. */
+  LossKernel SCALAR = new LossKernel() {
+    @Override
+    public double sumOfSquaredErrors(double constant, double[] offenseParams,
+        double[] defenseParams, int[] offenses, int[] defenses,
+        double[] changes, int from, int to) {
+      double sum = 0;
+      for (int i = from; i < to; i++) {
+        double predicted = constant +
+            offenseParams[offenses[i]] - defenseParams[defenses[i]];
+        double error = changes[i] - predicted;
+        sum += error * error;
+      }
+      return sum;
+    }
+
+    @Override
+    public double addResiduals(double constant, double[] offenseParams,
+        double[] defenseParams, int[] offenses, int[] defenses,
+        double[] changes, int from, int to, double[] offenseSums,
+        double[] defenseSums) {
+      double sum = 0;
+      for (int i = from; i < to; i++) {
+        double error = changes[i] - (constant +
+            offenseParams[offenses[i]] - defenseParams[defenses[i]]);
+        offenseSums[offenses[i]] += error;
+        defenseSums[defenses[i]] += error;
+        sum += error;
+      }
+      return sum;
+    }
+
+    @Override
+    public double sumOfSquaredErrors(double constant, double[] offenseParams,
+        double[] defenseParams, int[] offenses, int[] defenses,
+        double[] changes, double[] weights, int from, int to) {
+      double sum = 0;
+      for (int i = from; i < to; i++) {
+        double predicted = constant +
+            offenseParams[offenses[i]] - defenseParams[defenses[i]];
+        double error = changes[i] - predicted;
+        sum += weights[i - from] * error * error;
+      }
+      return sum;
+    }
+
+    @Override
+    public double addResiduals(double constant, double[] offenseParams,
+        double[] defenseParams, int[] offenses, int[] defenses,
+        double[] changes, double[] weights, int from, int to,
+        double[] offenseSums, double[] defenseSums) {
+      double sum = 0;
+      for (int i = from; i < to; i++) {
+        double error = weights[i - from] * (changes[i] - (constant +
+            offenseParams[offenses[i]] - defenseParams[defenses[i]]));
+        offenseSums[offenses[i]] += error;
+        defenseSums[defenses[i]] += error;
+        sum += error;
+      }
+      return sum;
+    }
+  };
+
+  /** The fastest kernel available, as described above. */
+  LossKernel BEST = Loader.load();
+
+  /** Holds the code to find {@code BEST}. */
+  final class Loader {
+    private Loader() {}
+
+    /** Returns the vector kernel if it can be loaded or else SCALAR. */
+    private static LossKernel load() {
+      if (!Boolean.parseBoolean(System.getProperty("cse417.vector", "true")))
+        return SCALAR;
+      try {
+        return (LossKernel) Class.forName("cse417.VectorLossKernel")
+            .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError ex) {
+        return SCALAR;  // class or module is not available
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package cse417;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+
+
+/**
+ * Program that predicts the change in expected points for drives in upcoming
+ * matchups using a model saved by {@code TeamModeler --save}. The matchups are
+ * read from a CSV file (or standard input if the name is "-") with a header row
+ * and then columns for the offense, the defense, and optionally the season,
+ * which is used to resolve the aliases of teams saved with the model. For each
+ * matchup, a row with the offense, defense, and prediction is printed.
+ * <p>
+ * The matchups are scored in blocks of up to {@code BLOCK_SIZE}, so this uses
+ * little memory however many there are. A block is also scored and printed
+ * whenever no more input is ready, so a client writing matchups to standard
+ * input one at a time gets each prediction as soon as it is sent. Rows that
+ * cannot be parsed or that name unknown teams are reported and skipped.
+ */
+public class MatchupPredictor {
+
+  /** Number of matchups that are scored at once. */
+  private static final int BLOCK_SIZE = 1024;
+
+  /** Model used to make the predictions. */
+  private final TeamModel model;
+
+  /** Indexes of the offense and defense of each matchup in the block. */
+  private final int[] offenses = new int[BLOCK_SIZE];
+  private final int[] defenses = new int[BLOCK_SIZE];
+
+  /** Names of the offense and defense of each matchup in the block. */
+  private final String[] offenseNames = new String[BLOCK_SIZE];
+  private final String[] defenseNames = new String[BLOCK_SIZE];
+
+  /** Predictions for the matchups in the block. */
+  private final double[] predictions = new double[BLOCK_SIZE];
+
+  /** Number of matchups in the current block. */
+  private int count;
+
+  /** Creates a predictor using the given model. */
+  public MatchupPredictor(TeamModel model) {
+    this.model = model;
+  }
+
+  /** Entry point for a program to predict drives from a saved model. */
+  public static void main(String[] args) throws IOException {
+    ArgParser argParser = new ArgParser("MatchupPredictor");
+    args = argParser.parseArgs(args, 2, 2);
+
+    MatchupPredictor predictor = new MatchupPredictor(TeamModel.load(args[0]));
+    PrintStream out = new PrintStream(
+        new BufferedOutputStream(System.out), false);
+    try (Reader in = args[1].equals("-") ?
+        new InputStreamReader(System.in) : new FileReader(args[1])) {
+      predictor.predictAll(in, out);
+    } finally {
+      out.flush();
+    }
+  }
+
+  /**
+   * Prints a prediction for each matchup in the given CSV text (in the format
+   * described above) to the given stream. Rows that cannot be parsed or that
+   * name teams not in the model are reported and skipped.
+   */
+  public void predictAll(Reader in, PrintStream out) throws IOException {
+    BufferedReader lines = new BufferedReader(in);
+    lines.readLine();  // header
+    out.println("offense,defense,predicted");
+    try {
+      String line;
+      while ((line = lines.readLine()) != null) {
+        if (line.isEmpty() || !add(line))
+          continue;
+        if (count == BLOCK_SIZE || !lines.ready()) {
+          printBlock(out);
+          out.flush();
+        }
+      }
+    } finally {
+      printBlock(out);
+    }
+  }
+
+  /**
+   * Adds the matchup in the given CSV row to the block and returns true, or
+   * reports that it was skipped and returns false.
+   */
+  private boolean add(String line) {
+    String[] parts = CsvParser.parseRow(line);
+    if (parts.length < 2)
+      return skip("expected offense and defense", line);
+    try {
+      int season = (parts.length > 2 && !parts[2].isEmpty()) ?
+          Integer.parseInt(parts[2]) : 0;
+      TeamRegistry teams = model.getTeams();
+      offenses[count] = teams.indexOf(parts[0], season);
+      defenses[count] = teams.indexOf(parts[1], season);
+    } catch (NumberFormatException ex) {
+      return skip("expecting an integer season", line);
+    } catch (IllegalArgumentException ex) {
+      return skip(ex.getMessage(), line);
+    }
+    offenseNames[count] = parts[0];
+    defenseNames[count] = parts[1];
+    count += 1;
+    return true;
+  }
+
+  /** Reports that the given line was skipped and returns false. */
+  private static boolean skip(String reason, String line) {
+    System.err.printf("Skipping matchup (%s): %s\n", reason, line);
+    return false;
+  }
+
+  /** Scores and prints the matchups in the current block. */
+  private void printBlock(PrintStream out) {
+    model.predict(offenses, defenses, count, predictions);
+    for (int i = 0; i < count; i++) {
+      out.println(CsvParser.formatRow(offenseNames[i], defenseNames[i],
+          String.format("%.4f", predictions[i])));
+    }
+    count = 0;
+  }
+}
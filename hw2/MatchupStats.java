@@ -0,0 +1,154 @@
+package cse417;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.List;
+
+
+/**
+ * Stores sufficient statistics for evaluating a {@code TeamModel} on a set of
+ * drives. Since the model predicts the same change for every drive with the
+ * same offense and defense, the squared loss depends on the drives only
+ * through the count, sum of changes, and sum of squared changes for each such
+ * matchup. With these, the loss can be evaluated in time proportional to the
+ * number of matchups, regardless of the number of drives.
+ */
+public class MatchupStats {
+
+  /** Number of teams, which may play in any matchup. */
+  private final int numTeams;
+
+  /** Number of drives for each matchup, indexed by {@code index}. */
+  private final int[] counts;
+
+  /** Sum of the changes in expected points for each matchup. */
+  private final double[] sums;
+
+  /** Sum of the squared changes in expected points for each matchup. */
+  private final double[] sumsOfSquares;
+
+  /** Total number of drives. */
+  private int numDrives;
+
+  /** Creates statistics describing no drives between teams in TEAMS. */
+  public MatchupStats() {
+    this(TeamRegistry.DEFAULT.size());
+  }
+
+  /** Creates statistics describing no drives between the given teams. */
+  public MatchupStats(TeamRegistry teams) {
+    this(teams.size());
+  }
+
+  /** Creates statistics describing no drives between this many teams. */
+  private MatchupStats(int numTeams) {
+    int n = numTeams * numTeams;
+    this.numTeams = numTeams;
+    this.counts = new int[n];
+    this.sums = new double[n];
+    this.sumsOfSquares = new double[n];
+  }
+
+  /** Returns statistics describing the given drives between teams in TEAMS. */
+  public static MatchupStats fromDrives(List<Drive> drives) {
+    return fromDrives(drives, TeamRegistry.DEFAULT);
+  }
+
+  /** Returns statistics describing the given drives between the given teams. */
+  public static MatchupStats fromDrives(List<Drive> drives, TeamRegistry teams) {
+    MatchupStats stats = new MatchupStats(teams);
+    for (int i = 0; i < drives.size(); i++)
+      stats.add(drives.get(i));
+    return stats;
+  }
+
+  /** Returns statistics describing the drives in the given store. */
+  public static MatchupStats fromDrives(DriveStore drives) {
+    MatchupStats stats = new MatchupStats(drives.getTeams());
+    for (int i = 0; i < drives.size(); i++)
+      stats.add(drives.offense(i), drives.defense(i), drives.change(i));
+    return stats;
+  }
+
+  /** Returns the index used for the given matchup in the arrays above. */
+  private int index(int offense, int defense) {
+    return offense * numTeams + defense;
+  }
+
+  /** Includes the given drive in these statistics. */
+  public MatchupStats add(Drive drive) {
+    return add(drive.offenseId, drive.defenseId, drive.getChange());
+  }
+
+  /** Includes a drive with the given teams and change in the statistics. */
+  public MatchupStats add(int offense, int defense, double change) {
+    int k = index(offense, defense);
+    counts[k] += 1;
+    sums[k] += change;
+    sumsOfSquares[k] += change * change;
+    numDrives += 1;
+    return this;
+  }
+
+  /**
+   * Adds {@code scale} times the other statistics to these. With a scale of
+   * -1, this removes drives that were previously included.
+   */
+  public MatchupStats addScaledBy(int scale, MatchupStats other) {
+    assert numTeams == other.numTeams;
+    for (int k = 0; k < counts.length; k++) {
+      counts[k] += scale * other.counts[k];
+      sums[k] += scale * other.sums[k];
+      sumsOfSquares[k] += scale * other.sumsOfSquares[k];
+    }
+    numDrives += scale * other.numDrives;
+    assert numDrives >= 0;
+    return this;
+  }
+
+  /** Returns the number of teams. */
+  public int getNumTeams() { return numTeams; }
+
+  /** Returns the total number of drives. */
+  public int getNumDrives() { return numDrives; }
+
+  /** Returns the number of drives with the given offense and defense. */
+  public int getCount(int offense, int defense) {
+    return counts[index(offense, defense)];
+  }
+
+  /** Returns the sum of changes for the given offense and defense. */
+  public double getSum(int offense, int defense) {
+    return sums[index(offense, defense)];
+  }
+
+  /** Returns the sum of squared changes for the given offense and defense. */
+  public double getSumOfSquares(int offense, int defense) {
+    return sumsOfSquares[index(offense, defense)];
+  }
+
+  /** Writes these statistics to the given stream. */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(numTeams);
+    out.writeInt(numDrives);
+    for (int k = 0; k < counts.length; k++) {
+      out.writeInt(counts[k]);
+      out.writeDouble(sums[k]);
+      out.writeDouble(sumsOfSquares[k]);
+    }
+  }
+
+  /** Returns statistics read from a stream written by {@code writeTo}. */
+  public static MatchupStats readFrom(DataInputStream in) throws IOException {
+    MatchupStats stats = new MatchupStats(in.readInt());
+    stats.numDrives = in.readInt();
+    for (int k = 0; k < stats.counts.length; k++) {
+      stats.counts[k] = in.readInt();
+      stats.sums[k] = in.readDouble();
+      stats.sumsOfSquares[k] = in.readDouble();
+    }
+    return stats;
+  }
+}
@@ -1,6 +1,7 @@
 package cse417;
 
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
 
 
 /**
@@ -31,6 +32,18 @@ public class Optimizer {
    */
   public static double findMinimumOfUnimodal(
       DoubleFunction<Double> f, double a, double b, double tol) {
+    return findMinimumOfUnimodalPrimitive(x -> f.apply(x), a, b, tol);
+  }
+
+  /** As above but with a function that returns unboxed values. */
+  public static double findMinimumOfUnimodalPrimitive(
+      DoubleUnaryOperator f, double a, double b) {
+    return findMinimumOfUnimodalPrimitive(f, a, b, DEFAULT_TOLERANCE);
+  }
+
+  /** As above but with a function that returns unboxed values. */
+  public static double findMinimumOfUnimodalPrimitive(
+      DoubleUnaryOperator f, double a, double b, double tol) {
     assert a <= b;
 
     // Maintains the invariant that the minimu lies in [a,b]. Each iteration
@@ -38,7 +51,7 @@ public class Optimizer {
     while (b - a > tol) {
       double x1 = a + (b - a) / 3;
       double x2 = a + 2 * (b - a) / 3;
-      if (f.apply(x1) < f.apply(x2)) {
+      if (f.applyAsDouble(x1) < f.applyAsDouble(x2)) {
         b = x2;
       } else {
         a = x1;
@@ -65,6 +78,186 @@ public class Optimizer {
    */
   public static double findMaximumOfUnimodal(
       DoubleFunction<Double> f, double a, double b, double tol) {
-    return findMinimumOfUnimodal(x -> -f.apply(x), a, b, tol);
+    return findMinimumOfUnimodalPrimitive(x -> -f.apply(x), a, b, tol);
+  }
+
+  /** As above but with a function that returns unboxed values. */
+  public static double findMaximumOfUnimodalPrimitive(
+      DoubleUnaryOperator f, double a, double b) {
+    return findMaximumOfUnimodalPrimitive(f, a, b, DEFAULT_TOLERANCE);
+  }
+
+  /** As above but with a function that returns unboxed values. */
+  public static double findMaximumOfUnimodalPrimitive(
+      DoubleUnaryOperator f, double a, double b, double tol) {
+    return findMinimumOfUnimodalPrimitive(x -> -f.applyAsDouble(x), a, b, tol);
+  }
+
+  /** Fraction of the interval kept by each step of golden-section search. */
+  private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+
+  /**
+   * Returns a point close to the minimum of the given function, which must be
+   * unimodal with a minimum lying between {@code a} and {@code b}. By "close",
+   * we mean within a distance of {@code DEFAULT_TOLERANCE}.
+   */
+  public static double findMinimumByGoldenSection(
+      DoubleUnaryOperator f, double a, double b) {
+    return findMinimumByGoldenSection(f, a, b, DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Returns a point within a distance of {@code tol} of the minimum of the
+   * given function, which must be unimodal with its minimum lying between
+   * {@code a} and {@code b}. Like ternary search, but the two points divide
+   * the interval in the golden ratio, so the point that remains inside after
+   * shrinking the interval is one of the next two points. Hence, this needs
+   * only one new evaluation of the function per iteration.
+   */
+  public static double findMinimumByGoldenSection(
+      DoubleUnaryOperator f, double a, double b, double tol) {
+    assert a <= b;
+
+    double x1 = b - GOLDEN_RATIO * (b - a);
+    double x2 = a + GOLDEN_RATIO * (b - a);
+    double f1 = f.applyAsDouble(x1);
+    double f2 = f.applyAsDouble(x2);
+
+    // Inv: the minimum lies in [a,b], a <= x1 <= x2 <= b, f1 = f(x1), and
+    // f2 = f(x2). (The second test stops us if roundoff makes x1 = x2.)
+    while (b - a > tol && x1 < x2) {
+      if (f1 < f2) {
+        b = x2;
+        x2 = x1;
+        f2 = f1;
+        x1 = b - GOLDEN_RATIO * (b - a);
+        f1 = f.applyAsDouble(x1);
+      } else {
+        a = x1;
+        x1 = x2;
+        f1 = f2;
+        x2 = a + GOLDEN_RATIO * (b - a);
+        f2 = f.applyAsDouble(x2);
+      }
+    }
+
+    return (a + b) / 2;
+  }
+
+  /**
+   * Returns a point close to the minimum of the given function, which must be
+   * unimodal with a minimum lying between {@code a} and {@code b}. By "close",
+   * we mean within a distance of {@code DEFAULT_TOLERANCE}.
+   */
+  public static double findMinimumByBrent(
+      DoubleUnaryOperator f, double a, double b) {
+    return findMinimumByBrent(f, a, b, DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Returns a point within a distance of {@code tol} of the minimum of the
+   * given function, which must be unimodal with its minimum lying between
+   * {@code a} and {@code b}. This uses Brent's method: each step moves to the
+   * minimum of the parabola through the three best points seen so far, unless
+   * that step is outside the interval or is not shrinking fast enough, in
+   * which case it takes a golden-section step instead.
+   */
+  public static double findMinimumByBrent(
+      DoubleUnaryOperator f, double a, double b, double tol) {
+    assert a <= b;
+    final double step = 1 - GOLDEN_RATIO;
+
+    // Inv: the minimum lies in [a,b]; x is the best point seen so far, w the
+    // second best, and v the previous value of w.
+    double x = a + step * (b - a);
+    double w = x, v = x;
+    double fx = f.applyAsDouble(x);
+    double fw = fx, fv = fx;
+    double d = 0;  // last step taken
+    double e = 0;  // step taken before that
+
+    while (true) {
+      double m = (a + b) / 2;
+      double tol1 = Math.max(tol / 2, 2 * Math.ulp(x));
+      double tol2 = 2 * tol1;
+      if (Math.abs(x - m) <= tol2 - (b - a) / 2)
+        break;  // x is within tol2 of both a and b
+
+      boolean useGolden = true;
+      if (Math.abs(e) > tol1) {
+        // Find the minimum of the parabola through x, w, and v as x + p / q.
+        double r = (x - w) * (fx - fv);
+        double q = (x - v) * (fx - fw);
+        double p = (x - v) * q - (x - w) * r;
+        q = 2 * (q - r);
+        if (q > 0) {
+          p = -p;
+        } else {
+          q = -q;
+        }
+
+        // Accept it only if it lies inside [a,b] and the step is less than
+        // half of the step before last.
+        double prevE = e;
+        e = d;
+        if (Math.abs(p) < Math.abs(q * prevE / 2) &&
+            p > q * (a - x) && p < q * (b - x)) {
+          d = p / q;
+          if ((x + d) - a < tol2 || b - (x + d) < tol2)
+            d = (m >= x) ? tol1 : -tol1;  // too close to an end
+          useGolden = false;
+        }
+      }
+      if (useGolden) {
+        e = (x >= m) ? a - x : b - x;
+        d = step * e;
+      }
+
+      // Never evaluate at a point closer than tol1 to x.
+      double u = (Math.abs(d) >= tol1) ? x + d : x + Math.copySign(tol1, d);
+      double fu = f.applyAsDouble(u);
+
+      if (fu <= fx) {
+        if (u >= x) {
+          a = x;
+        } else {
+          b = x;
+        }
+        v = w; fv = fw;
+        w = x; fw = fx;
+        x = u; fx = fu;
+      } else {
+        if (u < x) {
+          a = u;
+        } else {
+          b = u;
+        }
+        if (fu <= fw || w == x) {
+          v = w; fv = fw;
+          w = u; fw = fu;
+        } else if (fu <= fv || v == x || v == w) {
+          v = u; fv = fu;
+        }
+      }
+    }
+
+    return x;
+  }
+
+  /**
+   * Returns the point minimizing {@code (x - value)^2 + 2 * threshold * |x|},
+   * which is {@code value} moved toward zero by {@code threshold} (and zero if
+   * it is closer than that). This is the closed-form solution of a
+   * one-dimensional squared loss with an L1 penalty.
+   */
+  public static double softThreshold(double value, double threshold) {
+    assert threshold >= 0;
+    if (value > threshold) {
+      return value - threshold;
+    } else if (value < -threshold) {
+      return value + threshold;
+    } else {
+      return 0;
+    }
   }
 }
@@ -1,6 +1,7 @@
 package cse417;
 
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
 
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -32,4 +33,52 @@ public class OptimizerTest {
     assertEquals(3, Optimizer.findMaximumOfUnimodal(h, -25, 25), 1e-5);
     assertEquals(3, Optimizer.findMaximumOfUnimodal(h, -25, 25, 1e-10), 1e-10);
   }
+
+  @Test
+  public void testFindMinimumPrimitive() {
+    DoubleUnaryOperator h = x -> (x+3) * (x+3);
+    assertEquals(-3, Optimizer.findMinimumOfUnimodalPrimitive(h, -25, 25),
+        1e-5);
+    DoubleUnaryOperator g = x -> -h.applyAsDouble(x-6);
+    assertEquals(3, Optimizer.findMaximumOfUnimodalPrimitive(g, -25, 25, 1e-10),
+        1e-10);
+
+    // Implicitly typed lambdas still go to the boxed versions.
+    assertEquals(2, Optimizer.findMinimumOfUnimodal(x -> (x-2) * (x-2), 0, 5),
+        1e-5);
+    assertEquals(2, Optimizer.findMaximumOfUnimodal(x -> -(x-2) * (x-2), 0, 5),
+        1e-5);
+  }
+
+  @Test
+  public void testGoldenSection() {
+    assertEquals(0, Optimizer.findMinimumByGoldenSection(
+        x -> Math.abs(x), -10, 1), 1e-5);
+    assertEquals(1, Optimizer.findMinimumByGoldenSection(
+        x -> Math.abs(x-1), 0, 10), 1e-5);
+    assertEquals(-3, Optimizer.findMinimumByGoldenSection(
+        x -> (x+3) * (x+3), -25, 25, 1e-10), 1e-10);
+    assertEquals(5, Optimizer.findMinimumByGoldenSection(
+        x -> -x, -5, 5), 1e-5);
+  }
+
+  @Test
+  public void testBrent() {
+    assertEquals(0, Optimizer.findMinimumByBrent(
+        x -> Math.abs(x), -10, 1), 1e-5);
+    assertEquals(1, Optimizer.findMinimumByBrent(
+        x -> Math.abs(x-1), 0, 10), 1e-5);
+    assertEquals(-3, Optimizer.findMinimumByBrent(
+        x -> (x+3) * (x+3), -25, 25, 1e-10), 1e-10);
+    assertEquals(5, Optimizer.findMinimumByBrent(x -> -x, -5, 5), 1e-5);
+    assertEquals(Math.PI, Optimizer.findMinimumByBrent(
+        x -> Math.cos(x), 2, 4, 1e-9), 1e-7);
+  }
+
+  @Test
+  public void testSoftThreshold() {
+    assertEquals(2, Optimizer.softThreshold(3, 1), 0);
+    assertEquals(-2, Optimizer.softThreshold(-3, 1), 0);
+    assertEquals(0, Optimizer.softThreshold(0.5, 1), 0);
+  }
 }
@@ -0,0 +1,160 @@
+package cse417;
+
+import java.util.List;
+
+
+/**
+ * Finds the {@code TeamModel} minimizing the loss function by accelerated
+ * proximal gradient descent (FISTA). Each pass computes the derivative of the
+ * squared loss with {@code TeamModel.evalLossDerivative}, takes a gradient step
+ * in all parameters at once, and then applies the L1 penalty by
+ * soft-thresholding each parameter toward zero.
+ * <p>
+ * Rather than one step size for every parameter, each parameter gets a step
+ * based on the number of drives it affects. The squared loss is at most its
+ * value plus the gradient step plus a sum of {@code 3 * (drives affected) / N}
+ * times the square of each parameter's change, so these steps never increase
+ * the loss without momentum. When momentum does increase the loss, it is
+ * reset to zero. With weights on the drives, the counts of drives become their
+ * total weights.
+ * <p>
+ * As in {@code CoordinateDescent}, the drives are read from a
+ * {@code DriveStore}, and a list of drives is copied into one first. The loss
+ * and its derivative are then computed by {@code LossKernel.BEST}.
+ */
+public class ProximalGradient {
+
+  /**
+   * Returns the best model for the given drives, starting from {@code start}
+   * (which is not modified) and stopping once the L0 norm of the change made
+   * in one pass is at most {@code tol}.
+   *
+   * @param drives List of the drives that the model should describe.
+   * @param penalty Constant factor on the penalty term of the loss function.
+   * @param tol Stop when the L0 change per iteration less than this amount.
+   * @param start Model from which to begin the descent.
+   * @param listener Receives reports of the progress of the fit.
+   */
+  public static TeamModel findBestModel(List<Drive> drives, double penalty,
+      double tol, TeamModel start, FitListener listener) {
+    return findBestModel(drives, null, penalty, tol, start, listener);
+  }
+
+  /**
+   * As above but minimizing the loss with the given weight on each drive. If
+   * {@code weights} is null, every drive has weight one.
+   */
+  public static TeamModel findBestModel(List<Drive> drives, double[] weights,
+      double penalty, double tol, TeamModel start, FitListener listener) {
+    return findBestModel(DriveStore.fromDrives(drives, start.getTeams()),
+        DriveStore.inStoreOrder(drives, weights), penalty, tol, start,
+        listener);
+  }
+
+  /** As above but with the drives in a {@code DriveStore}. */
+  public static TeamModel findBestModel(DriveStore drives, double penalty,
+      double tol, TeamModel start, FitListener listener) {
+    return findBestModel(drives, null, penalty, tol, start, listener);
+  }
+
+  /** As above but with the given weights (or null) on the drives. */
+  public static TeamModel findBestModel(DriveStore drives, double[] weights,
+      double penalty, double tol, TeamModel start, FitListener listener) {
+    TeamModel best = start.copy();
+    int numTeams = best.getNumTeams();
+    int n = drives.size();
+    if (n == 0)
+      return best;
+
+    assert weights == null || weights.length == n;
+
+    // Step for each parameter is W / (6 * weight of the drives it affects),
+    // where W is the total weight, with zero meaning that the parameter
+    // affects no drives.
+    TeamModel steps = new TeamModel(best.getTeams()).setConstant(1. / 6);
+    double[] offenseWeights = new double[numTeams];
+    double[] defenseWeights = new double[numTeams];
+    double totalWeight = 0;
+    for (int i = 0; i < n; i++) {
+      double w = (weights != null) ? weights[i] : 1;
+      offenseWeights[drives.offense(i)] += w;
+      defenseWeights[drives.defense(i)] += w;
+      totalWeight += w;
+    }
+    for (int t = 0; t < numTeams; t++) {
+      steps.setOffense(t, (offenseWeights[t] > 0) ?
+          totalWeight / (6 * offenseWeights[t]) : 0);
+      steps.setDefense(t, (defenseWeights[t] > 0) ?
+          totalWeight / (6 * defenseWeights[t]) : 0);
+    }
+
+    // Inv: point is where the next gradient is taken, which is best plus
+    // momentum times the last change. The step from point never increases the
+    // loss if momentum is zero (i.e., point equals best).
+    TeamModel point = best.copy();
+    TeamModel next = best.copy();
+    listener.fitStarted("gradient", best.getTeams(), penalty);
+    long fitStart = System.nanoTime();
+    double momentum = 1;
+    double loss = best.evalLoss(drives, weights, penalty);
+    long lossEvaluations = 1;
+    double change = Double.POSITIVE_INFINITY;
+    int sweeps = 0;
+    while (change > tol) {
+      long sweepStart = System.nanoTime();
+      TeamModel derivative = point.evalLossDerivative(drives, weights);
+      proxStep(point, derivative, steps, 1. / totalWeight, penalty, next);
+      double nextLoss = next.evalLoss(drives, weights, penalty);
+      lossEvaluations++;
+
+      if (nextLoss > loss && momentum > 1) {
+        listener.momentumRestarted(sweeps + 1);
+        point.copyFrom(best);
+        momentum = 1;
+        continue;
+      }
+
+      double nextMomentum = (1 + Math.sqrt(1 + 4 * momentum * momentum)) / 2;
+      point.copyFrom(next).addScaledBy(-1, best);  // change in this step
+      change = point.norm0();
+      point.scaleBy((momentum - 1) / nextMomentum);
+      point.addScaledBy(1, next);
+
+      best.copyFrom(next);
+      loss = nextLoss;
+      momentum = nextMomentum;
+
+      listener.sweepFinished(
+          ++sweeps, System.nanoTime() - sweepStart, change, lossEvaluations);
+    }
+    listener.fitFinished(sweeps, lossEvaluations, System.nanoTime() - fitStart);
+    return best;
+  }
+
+  /**
+   * Stores into {@code result} the result of moving each parameter of
+   * {@code point} by its step times {@code scale} times the derivative, and
+   * then soft-thresholding by its step times the penalty.
+   */
+  private static void proxStep(TeamModel point, TeamModel derivative,
+      TeamModel steps, double scale, double penalty, TeamModel result) {
+    result.setConstant(prox(point.getConstant(), derivative.getConstant(),
+        steps.getConstant(), scale, penalty));
+    for (int t = 0; t < point.getNumTeams(); t++) {
+      result.setOffense(t, prox(point.getOffense(t), derivative.getOffense(t),
+          steps.getOffense(t), scale, penalty));
+      result.setDefense(t, prox(point.getDefense(t), derivative.getDefense(t),
+          steps.getDefense(t), scale, penalty));
+    }
+  }
+
+  /** Returns the new value of one parameter as described above. */
+  private static double prox(double value, double derivative, double step,
+      double scale, double penalty) {
+    if (step == 0)
+      return 0;  // only the penalty depends on this parameter
+    double x = Optimizer.softThreshold(
+        value - step * scale * derivative, step * penalty);
+    return Math.max(-TeamModel.LIMIT, Math.min(TeamModel.LIMIT, x));
+  }
+}
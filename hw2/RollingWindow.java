@@ -0,0 +1,192 @@
+package cse417;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Maintains a model of the drives in the most recent weeks, along with the
+ * sufficient statistics of the drives in each of those weeks, so that the model
+ * can be updated as new weeks arrive without refitting from scratch. When the
+ * window slides forward, the statistics of the weeks that fall out of it are
+ * subtracted, those of the new weeks are added, and the model is refit
+ * starting from the previous one. Both are saved to a file between runs.
+ */
+public class RollingWindow {
+
+  /** First bytes of a file written by {@code writeTo}. */
+  private static final int MAGIC = 0x524F4C4C;  // "ROLL"
+
+  /** Version of the file format. */
+  private static final int VERSION = 1;
+
+  /** Number of weeks in the window. */
+  private final int numWeeks;
+
+  /** Teams whose drives are included. */
+  private final TeamRegistry teams;
+
+  /** Statistics of the drives in each (serial) week of the window. */
+  private final TreeMap<Integer, MatchupStats> weekStats = new TreeMap<>();
+
+  /** Statistics of all the drives in the window. */
+  private final MatchupStats total;
+
+  /** Best model found for the drives in the window. */
+  private TeamModel model;
+
+  /** Creates an empty window of the given number of weeks and teams. */
+  public RollingWindow(int numWeeks, TeamRegistry teams) {
+    assert numWeeks > 0;
+    this.numWeeks = numWeeks;
+    this.teams = teams;
+    this.total = new MatchupStats(teams);
+    this.model = new TeamModel(teams);
+  }
+
+  /** Returns the number of weeks in the window. */
+  public int getNumWeeks() { return numWeeks; }
+
+  /** Returns the teams whose drives are included. */
+  public TeamRegistry getTeams() { return teams; }
+
+  /** Returns the weeks currently included, in increasing order. */
+  public List<Integer> getWeeks() { return new ArrayList<>(weekStats.keySet()); }
+
+  /** Returns the statistics of all the drives in the window. */
+  public MatchupStats getStats() { return total; }
+
+  /** Returns the model last fit to the window. */
+  public TeamModel getModel() { return model; }
+
+  /**
+   * Moves the window to hold the latest {@code numWeeks} weeks of the given
+   * drives, which must have the same teams. Weeks that leave the window are
+   * removed, and weeks that enter it are read from the drives. Weeks that were
+   * already included are assumed not to have changed, except for the latest of
+   * them, which is always reread in case it was incomplete the last time.
+   */
+  public void slideTo(DriveStore drives) {
+    assert drives.getTeams().hasSameTeams(teams);
+    int[] weeks = drives.distinctWeeks();
+    int lastWeek = weeks[weeks.length - 1];
+    int firstWeek = weeks[Math.max(0, weeks.length - numWeeks)];
+    int prevLastWeek = weekStats.isEmpty() ? lastWeek : weekStats.lastKey();
+
+    List<Integer> stale = new ArrayList<>();
+    for (int week : weekStats.keySet()) {
+      if (week < firstWeek || week > lastWeek || week == prevLastWeek)
+        stale.add(week);
+    }
+    for (int week : stale)
+      total.addScaledBy(-1, weekStats.remove(week));
+
+    for (int week : weeks) {
+      if (firstWeek <= week && !weekStats.containsKey(week)) {
+        MatchupStats stats = MatchupStats.fromDrives(drives.weeks(week, week));
+        weekStats.put(week, stats);
+        total.addScaledBy(1, stats);
+      }
+    }
+  }
+
+  /**
+   * Adds the given drive, whose indexes must be for the teams of this window,
+   * to the statistics of its week. If that week is not yet in the window, it
+   * is added, and if the window then has too many weeks, the oldest is
+   * removed. Drives from weeks before a full window are not added. Returns
+   * whether the drive was added.
+   */
+  public boolean add(Drive drive) {
+    int week = DriveStore.serialWeek(drive.season, drive.week);
+    MatchupStats stats = weekStats.get(week);
+    if (stats == null) {
+      if (weekStats.size() == numWeeks && week < weekStats.firstKey())
+        return false;
+      stats = new MatchupStats(teams);
+      weekStats.put(week, stats);
+      if (weekStats.size() > numWeeks)
+        total.addScaledBy(-1, weekStats.pollFirstEntry().getValue());
+    }
+    stats.add(drive);
+    total.add(drive);
+    return true;
+  }
+
+  /**
+   * Refits the model to the drives in the window, starting from the previous
+   * model, and returns the result. Arguments are as in
+   * {@code CoordinateDescent.findBestModel}.
+   */
+  public TeamModel fit(double penalty, double tol, FitListener listener) {
+    model = CoordinateDescent.findBestModel(total, penalty, tol, model, listener);
+    return model;
+  }
+
+  /** Writes the window, its statistics, and its model to the given file. */
+  public void writeTo(String fileName) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(fileName)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(teams.size());
+      for (String team : teams.getNames())
+        out.writeUTF(team);
+
+      out.writeInt(numWeeks);
+      out.writeDouble(model.getConstant());
+      for (int t = 0; t < teams.size(); t++) {
+        out.writeDouble(model.getOffense(t));
+        out.writeDouble(model.getDefense(t));
+      }
+
+      out.writeInt(weekStats.size());
+      for (Map.Entry<Integer, MatchupStats> entry : weekStats.entrySet()) {
+        out.writeInt(entry.getKey());
+        entry.getValue().writeTo(out);
+      }
+    }
+  }
+
+  /** Returns the window stored in a file written by {@code writeTo}. */
+  public static RollingWindow readFrom(String fileName) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(fileName)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("not a rolling window file: " + fileName);
+      List<String> names = new ArrayList<String>();
+      int numTeams = in.readInt();
+      for (int t = 0; t < numTeams; t++)
+        names.add(in.readUTF());
+      TeamRegistry teams = new TeamRegistry(
+          names, Collections.<TeamRegistry.Alias>emptyList());
+
+      RollingWindow window = new RollingWindow(in.readInt(), teams);
+      window.model.setConstant(in.readDouble());
+      for (int t = 0; t < numTeams; t++) {
+        window.model.setOffense(t, in.readDouble());
+        window.model.setDefense(t, in.readDouble());
+      }
+
+      int numStoredWeeks = in.readInt();
+      for (int i = 0; i < numStoredWeeks; i++) {
+        int week = in.readInt();
+        MatchupStats stats = MatchupStats.readFrom(in);
+        window.weekStats.put(week, stats);
+        window.total.addScaledBy(1, stats);
+      }
+      return window;
+    }
+  }
+}
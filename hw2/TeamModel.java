@@ -1,13 +1,20 @@
 package cse417;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
 /**
@@ -26,6 +33,16 @@ import java.util.Map;
  * A larger penalty will give better scores to simpler models and worse scores
  * to more complex models. The L1 norm is used because it pushes the optimal
  * model to have parameters that are zero rather than just small.
+ * <p>
+ * Parameters are stored in arrays indexed by the position of the team in a
+ * {@code TeamRegistry}, which defaults to the teams in {@code TEAMS}. Each
+ * {@code Drive} records these indexes when it is created, so evaluating the
+ * loss function does not look up any names or allocate. Models and drives used
+ * together must use the same registry.
+ * <p>
+ * A model can be saved to a file with {@code save} and read back with
+ * {@code load}, either in a compact binary format or, if the file name ends in
+ * ".csv", as text. Either way, the teams and their aliases are saved with it.
  */
 public class TeamModel {
 
@@ -38,39 +55,82 @@ public class TeamModel {
           "PHI", "PIT", "SD", "SEA", "SF", "TB", "TEN", "WAS"
       }));
 
+  /**
+   * Returns the index of the given team in {@code TEAMS}.
+   * @throws IllegalArgumentException if the team is not in {@code TEAMS}
+   */
+  public static int indexOf(String team) {
+    return TeamRegistry.DEFAULT.indexOf(team);
+  }
+
+  /**
+   * Largest magnitude of a parameter: the solvers keep every parameter in
+   * [-LIMIT, LIMIT].
+   */
+  public static final double LIMIT = 8;
+
+  /** First bytes of a file written by {@code writeTo}. */
+  private static final int MAGIC = 0x544D444C;  // "TMDL"
+
+  /** Version of the binary file format. */
+  private static final int VERSION = 1;
+
+  /** Stores the teams whose parameters are in this model. */
+  private final TeamRegistry teams;
+
   /** Stores the value of the constant term in the model. */
   private double constant;
 
-  /** Stores the value of the parameter for each offense. */
-  private final Map<String, Double> offenses;
+  /** Stores the value of the parameter for each offense, by team index. */
+  private final double[] offenses;
 
-  /** Stores the value of the parameter for each defense. */
-  private final Map<String, Double> defenses;
+  /** Stores the value of the parameter for each defense, by team index. */
+  private final double[] defenses;
 
-  /** Creates a model with all parameters set to zero. */
+  /** Creates a model of the teams in {@code TEAMS} with all parameters zero. */
   public TeamModel() {
-    this.offenses = new HashMap<String, Double>();
-    this.defenses = new HashMap<String, Double>();
+    this(TeamRegistry.DEFAULT);
+  }
 
-    for (String team : TEAMS) {
-      offenses.put(team, 0.);
-      defenses.put(team, 0.);
-    }
+  /** Creates a model of the given teams with all parameters set to zero. */
+  public TeamModel(TeamRegistry teams) {
+    this.teams = teams;
+    this.offenses = new double[teams.size()];
+    this.defenses = new double[teams.size()];
   }
 
   /** Creates a model with the given parameters. */
-  private TeamModel(double constant, Map<String, Double> offenses,
-      Map<String, Double> defenses) {
+  private TeamModel(TeamRegistry teams, double constant, double[] offenses,
+      double[] defenses) {
+    this.teams = teams;
     this.constant = constant;
-    this.offenses = new HashMap<String, Double>(offenses);
-    this.defenses = new HashMap<String, Double>(defenses);
+    this.offenses = offenses.clone();
+    this.defenses = defenses.clone();
   }
 
   /** Returns a copy of this model. */
   public TeamModel copy() {
-    return new TeamModel(constant, offenses, defenses);
+    return new TeamModel(teams, constant, offenses, defenses);
   }
 
+  /** Sets every parameter of this model to that of the other model. */
+  public TeamModel copyFrom(TeamModel other) {
+    assert offenses.length == other.offenses.length;
+    constant = other.constant;
+    System.arraycopy(other.offenses, 0, offenses, 0, offenses.length);
+    System.arraycopy(other.defenses, 0, defenses, 0, defenses.length);
+    return this;
+  }
+
+  /** Returns the teams whose parameters are in this model. */
+  public TeamRegistry getTeams() { return teams; }
+
+  /** Returns the number of teams whose parameters are in this model. */
+  public int getNumTeams() { return offenses.length; }
+
+  /** Returns the number of parameters in this model. */
+  public int getNumParameters() { return 1 + 2 * offenses.length; }
+
   /** Returns the current value of the constant term. */
   public double getConstant() { return constant; }
   
@@ -82,37 +142,50 @@ public class TeamModel {
 
   /** Returns the current value of the parameter for the given team's offense */
   public double getOffense(String team) {
-    assert offenses.containsKey(team);
-    return offenses.get(team);
+    return offenses[teams.indexOf(team)];
   }
 
   /** Sets the value of the parameter for the given team's offense. */
   public TeamModel setOffense(String team, double value) {
-    assert offenses.containsKey(team);
-    offenses.put(team, value);
+    offenses[teams.indexOf(team)] = value;
+    return this;
+  }
+
+  /** Returns the value of the parameter for the offense with this index. */
+  public double getOffense(int team) { return offenses[team]; }
+
+  /** Sets the value of the parameter for the offense with this index. */
+  public TeamModel setOffense(int team, double value) {
+    offenses[team] = value;
     return this;
   }
 
   /** Returns the current value of the parameter for the given team's defense */
   public double getDefense(String team) {
-    assert defenses.containsKey(team);
-    return defenses.get(team);
+    return defenses[teams.indexOf(team)];
   }
 
   /** Sets the value of the parameter for the given team's defense. */
   public TeamModel setDefense(String team, double value) {
-    assert defenses.containsKey(team);
-    defenses.put(team, value);
+    defenses[teams.indexOf(team)] = value;
+    return this;
+  }
+
+  /** Returns the value of the parameter for the defense with this index. */
+  public double getDefense(int team) { return defenses[team]; }
+
+  /** Sets the value of the parameter for the defense with this index. */
+  public TeamModel setDefense(int team, double value) {
+    defenses[team] = value;
     return this;
   }
 
   /** Multiples every parameter in the model by {@code scale}. */
   public void scaleBy(double scale) {
-    TeamModel result = new TeamModel();
     constant *= scale;
-    for (String team : TEAMS) {
-      offenses.put(team, scale * offenses.get(team));
-      defenses.put(team, scale * defenses.get(team));
+    for (int i = 0; i < offenses.length; i++) {
+      offenses[i] *= scale;
+      defenses[i] *= scale;
     }
   }
 
@@ -122,12 +195,11 @@ public class TeamModel {
    * {@code this += scale * other}.)
    */
   public TeamModel addScaledBy(double scale, TeamModel other) {
+    assert offenses.length == other.offenses.length;
     constant += scale * other.constant;
-    for (String team : TEAMS) {
-      offenses.put(team,
-          offenses.get(team) + scale * other.offenses.get(team));
-      defenses.put(team,
-          defenses.get(team) + scale * other.defenses.get(team));
+    for (int i = 0; i < offenses.length; i++) {
+      offenses[i] += scale * other.offenses[i];
+      defenses[i] += scale * other.defenses[i];
     }
     return this;
   }
@@ -135,45 +207,122 @@ public class TeamModel {
   /** Returns the L0 norm of the model thought of as a vector. */
   public double norm0() {
     double s = Math.abs(constant);
-    for (String team : TEAMS) {
-      s = Math.max(s, Math.abs(offenses.get(team)));
-      s = Math.max(s, Math.abs(defenses.get(team)));
-    } 
+    for (int i = 0; i < offenses.length; i++) {
+      s = Math.max(s, Math.abs(offenses[i]));
+      s = Math.max(s, Math.abs(defenses[i]));
+    }
     return s;
   }
 
   /** Returns the L1 norm of the model thought of as a vector. */
   public double norm1() {
     double s = Math.abs(constant);
-    for (String team : TEAMS) {
-      s += Math.abs(offenses.get(team));
-      s += Math.abs(defenses.get(team));
-    } 
+    for (int i = 0; i < offenses.length; i++) {
+      s += Math.abs(offenses[i]);
+      s += Math.abs(defenses[i]);
+    }
     return s;
   }
 
   /** Returns the L2 norm of the model thought of as a vector. */
   public double norm2() {
     double s = constant * constant;
-    for (String team : TEAMS) {
-      s += offenses.get(team) * offenses.get(team);
-      s += defenses.get(team) * defenses.get(team);
-    } 
+    for (int i = 0; i < offenses.length; i++) {
+      s += offenses[i] * offenses[i];
+      s += defenses[i] * defenses[i];
+    }
     return Math.sqrt(s);
   }
 
+  /** Returns the change in expected points predicted for the given drive. */
+  public double predict(Drive drive) {
+    return constant + offenses[drive.offenseId] - defenses[drive.defenseId];
+  }
+
+  /** Returns the change predicted for a drive between the given teams. */
+  public double predict(int offense, int defense) {
+    return constant + offenses[offense] - defenses[defense];
+  }
+
+  /**
+   * Stores in {@code out} the change predicted for each of the first
+   * {@code count} drives between the given offenses and defenses (indexes).
+   */
+  public void predict(int[] offenses, int[] defenses, int count,
+      double[] out) {
+    for (int i = 0; i < count; i++)
+      out[i] = constant + this.offenses[offenses[i]] - this.defenses[defenses[i]];
+  }
+
   /** Returns the value of the loss function for the current model. */
   public double evalLoss(List<Drive> drives, double penalty) {
     double loss = 0;
-    for (Drive drive : drives) {
-      double actual = drive.expPointsAtEnd - drive.expPointsAtStart;
-      double predicted = constant +
-          offenses.get(drive.offense) - defenses.get(drive.defense);
-      loss += (actual - predicted) * (actual - predicted);
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      double error = drive.getChange() - predict(drive);
+      loss += error * error;
     }
     return loss / drives.size() + penalty * norm1();
   }
 
+  /**
+   * As above but with the squared error of each drive multiplied by its
+   * weight and the sum divided by the total weight rather than the number of
+   * drives. If {@code weights} is null, every drive has weight one.
+   */
+  public double evalLoss(List<Drive> drives, double[] weights, double penalty) {
+    if (weights == null)
+      return evalLoss(drives, penalty);
+    assert weights.length == drives.size();
+    double loss = 0;
+    double totalWeight = 0;
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      double error = drive.getChange() - predict(drive);
+      loss += weights[i] * error * error;
+      totalWeight += weights[i];
+    }
+    return loss / totalWeight + penalty * norm1();
+  }
+
+  /**
+   * As above but with the drives in a {@code DriveStore}. This uses
+   * {@code LossKernel.BEST}, which may be vectorized.
+   */
+  public double evalLoss(DriveStore drives, double penalty) {
+    return evalLoss(drives, penalty, LossKernel.BEST);
+  }
+
+  /** As above but computing the sum of squared errors with the given kernel. */
+  public double evalLoss(DriveStore drives, double penalty, LossKernel kernel) {
+    double loss = drives.sumOfSquaredErrors(
+        kernel, constant, offenses, defenses);
+    return loss / drives.size() + penalty * norm1();
+  }
+
+  /**
+   * As above but with the given weight on each drive (see the weighted
+   * {@code evalLoss} for a list of drives). If {@code weights} is null, every
+   * drive has weight one. This also uses {@code LossKernel.BEST}.
+   */
+  public double evalLoss(DriveStore drives, double[] weights, double penalty) {
+    return evalLoss(drives, weights, penalty, LossKernel.BEST);
+  }
+
+  /** As above but computing the sum of squared errors with the given kernel. */
+  public double evalLoss(DriveStore drives, double[] weights, double penalty,
+      LossKernel kernel) {
+    if (weights == null)
+      return evalLoss(drives, penalty, kernel);
+    assert weights.length == drives.size();
+    double totalWeight = 0;
+    for (double w : weights)
+      totalWeight += w;
+    double loss = drives.sumOfSquaredErrors(
+        kernel, constant, offenses, defenses, weights);
+    return loss / totalWeight + penalty * norm1();
+  }
+
   /**
    * Returns the derivative of the loss function, with <b>no penalty term</b>,
    * at the current model. (The penalty term is not diffentiable.) Since the
@@ -181,32 +330,144 @@ public class TeamModel {
    * {@code TeamModel}, even though it should not be interpreted as such.
    */
   public TeamModel evalLossDerivative(List<Drive> drives) {
-    TeamModel derivative = new TeamModel();
+    TeamModel derivative = new TeamModel(teams);
 
     // Add the derivative of the main loss term.
-    for (Drive drive : drives) {
-      double actual = drive.expPointsAtEnd - drive.expPointsAtStart;
-      double predicted = constant +
-          offenses.get(drive.offense) - defenses.get(drive.defense);
-      derivative.constant -= 2 * (actual - predicted);
-      derivative.offenses.put(drive.offense,
-          derivative.offenses.get(drive.offense) - 2 * (actual - predicted));
-      derivative.defenses.put(drive.defense,
-          derivative.defenses.get(drive.defense) + 2 * (actual - predicted));
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      double error = drive.getChange() - predict(drive);
+      derivative.constant -= 2 * error;
+      derivative.offenses[drive.offenseId] -= 2 * error;
+      derivative.defenses[drive.defenseId] += 2 * error;
     }
 
     return derivative;
   }
 
+  /**
+   * As above but with the drives in a {@code DriveStore}. This uses
+   * {@code LossKernel.BEST}, which may be vectorized.
+   */
+  public TeamModel evalLossDerivative(DriveStore drives) {
+    return evalLossDerivative(drives, LossKernel.BEST);
+  }
+
+  /** As above but computing the sums of the residuals with the given kernel. */
+  public TeamModel evalLossDerivative(DriveStore drives, LossKernel kernel) {
+    TeamModel derivative = new TeamModel(teams);
+    double sum = drives.addResiduals(kernel, constant, offenses, defenses,
+        derivative.offenses, derivative.defenses);
+
+    // Each residual r adds -2r to the constant and offense and 2r to the
+    // defense.
+    derivative.constant = -2 * sum;
+    for (int t = 0; t < offenses.length; t++) {
+      derivative.offenses[t] *= -2;
+      derivative.defenses[t] *= 2;
+    }
+    return derivative;
+  }
+
+  /**
+   * As above but for the loss with the given weights on the drives. (See
+   * {@code evalLoss}.) The result is <b>not</b> divided by the total weight.
+   */
+  public TeamModel evalLossDerivative(List<Drive> drives, double[] weights) {
+    if (weights == null)
+      return evalLossDerivative(drives);
+    assert weights.length == drives.size();
+    TeamModel derivative = new TeamModel(teams);
+    for (int i = 0; i < drives.size(); i++) {
+      Drive drive = drives.get(i);
+      double error = 2 * weights[i] * (drive.getChange() - predict(drive));
+      derivative.constant -= error;
+      derivative.offenses[drive.offenseId] -= error;
+      derivative.defenses[drive.defenseId] += error;
+    }
+    return derivative;
+  }
+
+  /**
+   * As above but with the drives in a {@code DriveStore}. This uses
+   * {@code LossKernel.BEST}.
+   */
+  public TeamModel evalLossDerivative(DriveStore drives, double[] weights) {
+    return evalLossDerivative(drives, weights, LossKernel.BEST);
+  }
+
+  /** As above but computing the sums of the residuals with the given kernel. */
+  public TeamModel evalLossDerivative(DriveStore drives, double[] weights,
+      LossKernel kernel) {
+    if (weights == null)
+      return evalLossDerivative(drives, kernel);
+    assert weights.length == drives.size();
+    TeamModel derivative = new TeamModel(teams);
+    double sum = drives.addResiduals(kernel, constant, offenses, defenses,
+        weights, derivative.offenses, derivative.defenses);
+
+    // As above, each weighted residual r adds -2r to the constant and offense
+    // and 2r to the defense.
+    derivative.constant = -2 * sum;
+    for (int t = 0; t < offenses.length; t++) {
+      derivative.offenses[t] *= -2;
+      derivative.defenses[t] *= 2;
+    }
+    return derivative;
+  }
+
+  /**
+   * As above but with the drives described by their sufficient statistics.
+   * This takes time proportional to the number of matchups between teams.
+   */
+  public double evalLoss(MatchupStats stats, double penalty) {
+    assert stats.getNumTeams() == offenses.length;
+    double loss = 0;
+    for (int o = 0; o < offenses.length; o++) {
+      for (int d = 0; d < defenses.length; d++) {
+        int count = stats.getCount(o, d);
+        if (count == 0)
+          continue;
+
+        // Sum of (change - predicted)^2 over the drives in this matchup.
+        double predicted = constant + offenses[o] - defenses[d];
+        loss += stats.getSumOfSquares(o, d)
+            - 2 * predicted * stats.getSum(o, d)
+            + count * predicted * predicted;
+      }
+    }
+    return loss / stats.getNumDrives() + penalty * norm1();
+  }
+
+  /** As above but with the drives described by their sufficient statistics. */
+  public TeamModel evalLossDerivative(MatchupStats stats) {
+    assert stats.getNumTeams() == offenses.length;
+    TeamModel derivative = new TeamModel(teams);
+    for (int o = 0; o < offenses.length; o++) {
+      for (int d = 0; d < defenses.length; d++) {
+        int count = stats.getCount(o, d);
+        if (count == 0)
+          continue;
+
+        // Sum of 2 * (change - predicted) over the drives in this matchup.
+        double predicted = constant + offenses[o] - defenses[d];
+        double error = 2 * (stats.getSum(o, d) - count * predicted);
+        derivative.constant -= error;
+        derivative.offenses[o] -= error;
+        derivative.defenses[d] += error;
+      }
+    }
+    return derivative;
+  }
+
   /** Returns a count of the parameters with magnitude at least {@code tol}. */
   public int countNonZeroParameters(double tol) {
     int count = 0;
     if (Math.abs(constant) >= tol)
       count += 1;
-    for (String team : TEAMS) {
-      if (Math.abs(offenses.get(team)) >= tol)
+    for (int i = 0; i < offenses.length; i++) {
+      if (Math.abs(offenses[i]) >= tol)
         count += 1;
-      if (Math.abs(defenses.get(team)) >= tol)
+      if (Math.abs(defenses[i]) >= tol)
         count += 1;
     }
     return count;
@@ -216,9 +477,147 @@ public class TeamModel {
   public void printTo(PrintStream out) throws IOException {
     out.printf("Constant: %5.2f\n\n", constant);
     out.println("     Off   Def");
-    for (String team : TEAMS) {
-      out.printf("%3s %5.2f %5.2f\n", team, offenses.get(team),
-          defenses.get(team));
+    for (int i = 0; i < offenses.length; i++) {
+      out.printf("%3s %5.2f %5.2f\n", teams.getName(i), offenses[i],
+          defenses[i]);
+    }
+  }
+
+  /**
+   * Saves this model to the given file. If the name ends in ".csv", the model
+   * is written by {@code writeCsvTo} and otherwise by {@code writeTo}.
+   */
+  public void save(String fileName) throws IOException {
+    if (fileName.endsWith(".csv")) {
+      try (PrintStream out = new PrintStream(
+          new BufferedOutputStream(new FileOutputStream(fileName)))) {
+        writeCsvTo(out);
+        if (out.checkError())
+          throw new IOException("error writing " + fileName);
+      }
+    } else {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(fileName)))) {
+        writeTo(out);
+      }
+    }
+  }
+
+  /** Returns the model in a file written by {@code save}. */
+  public static TeamModel load(String fileName) throws IOException {
+    if (fileName.endsWith(".csv")) {
+      try (Reader in = new FileReader(fileName)) {
+        return readCsvFrom(in);
+      }
+    } else {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(fileName)))) {
+        return readFrom(in);
+      }
+    }
+  }
+
+  /** Writes this model, with its teams, in binary to the given stream. */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(teams.size());
+    for (String team : teams.getNames())
+      out.writeUTF(team);
+    List<TeamRegistry.Alias> aliases = teams.getAliases();
+    out.writeInt(aliases.size());
+    for (TeamRegistry.Alias alias : aliases) {
+      out.writeUTF(alias.alias);
+      out.writeUTF(alias.team);
+      out.writeInt(alias.firstSeason);
+      out.writeInt(alias.lastSeason);
+    }
+
+    out.writeDouble(constant);
+    for (int i = 0; i < offenses.length; i++) {
+      out.writeDouble(offenses[i]);
+      out.writeDouble(defenses[i]);
+    }
+  }
+
+  /** Returns the model written to the given stream by {@code writeTo}. */
+  public static TeamModel readFrom(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION)
+      throw new IOException("not a model file");
+    List<String> names = new ArrayList<String>();
+    int numTeams = in.readInt();
+    for (int i = 0; i < numTeams; i++)
+      names.add(in.readUTF());
+    List<TeamRegistry.Alias> aliases = new ArrayList<TeamRegistry.Alias>();
+    int numAliases = in.readInt();
+    for (int i = 0; i < numAliases; i++) {
+      aliases.add(new TeamRegistry.Alias(
+          in.readUTF(), in.readUTF(), in.readInt(), in.readInt()));
+    }
+
+    TeamModel model = new TeamModel(new TeamRegistry(names, aliases));
+    model.constant = in.readDouble();
+    for (int i = 0; i < numTeams; i++) {
+      model.offenses[i] = in.readDouble();
+      model.defenses[i] = in.readDouble();
+    }
+    return model;
+  }
+
+  /**
+   * Writes this model as CSV text to the given stream. After a header, there
+   * is one row for the constant, one row for each team giving its name and
+   * offense and defense parameters, and then one row for each alias. Every
+   * value is written with enough digits to be read back exactly.
+   */
+  public void writeCsvTo(PrintStream out) {
+    out.println("kind,name,offense,defense");
+    out.println(CsvParser.formatRow(
+        "constant", "", Double.toString(constant), ""));
+    for (int i = 0; i < offenses.length; i++) {
+      out.println(CsvParser.formatRow("team", teams.getName(i),
+          Double.toString(offenses[i]), Double.toString(defenses[i])));
+    }
+    for (TeamRegistry.Alias alias : teams.getAliases()) {
+      out.println(CsvParser.formatRow("alias", alias.alias, alias.team,
+          alias.firstSeason + "-" + alias.lastSeason));
+    }
+  }
+
+  /** Returns the model written as CSV text by {@code writeCsvTo}. */
+  public static TeamModel readCsvFrom(Reader in) throws IOException {
+    CsvParser parser = new CsvParser(in, true, 4);
+    double constant = 0;
+    List<String> names = new ArrayList<String>();
+    List<Double> values = new ArrayList<Double>();
+    List<TeamRegistry.Alias> aliases = new ArrayList<TeamRegistry.Alias>();
+    try {
+      while (parser.hasNext()) {
+        String[] row = parser.next();
+        if (row[0].equals("constant")) {
+          constant = Double.parseDouble(row[2]);
+        } else if (row[0].equals("team")) {
+          names.add(row[1]);
+          values.add(Double.parseDouble(row[2]));
+          values.add(Double.parseDouble(row[3]));
+        } else if (row[0].equals("alias")) {
+          String[] seasons = row[3].split("-");
+          aliases.add(new TeamRegistry.Alias(row[1], row[2],
+              Integer.parseInt(seasons[0]), Integer.parseInt(seasons[1])));
+        } else {
+          throw new IOException("unknown kind of row: " + row[0]);
+        }
+      }
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+      throw new IOException("bad model file", ex);
+    }
+
+    TeamModel model = new TeamModel(new TeamRegistry(names, aliases));
+    model.constant = constant;
+    for (int i = 0; i < names.size(); i++) {
+      model.offenses[i] = values.get(2 * i);
+      model.defenses[i] = values.get(2 * i + 1);
     }
+    return model;
   }
 }
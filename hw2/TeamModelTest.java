@@ -0,0 +1,144 @@
+package cse417;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TeamModelTest {
+
+  @Test
+  public void testNamesAndIndexesAgree() {
+    TeamModel model = new TeamModel();
+    model.setOffense("SEA", 1.5).setDefense(TeamModel.indexOf("NE"), -0.5);
+    assertEquals(1.5, model.getOffense(TeamModel.indexOf("SEA")), 1e-12);
+    assertEquals(-0.5, model.getDefense("NE"), 1e-12);
+    assertEquals(2.0, model.norm1(), 1e-12);
+    assertEquals(2, model.countNonZeroParameters(0.1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownTeam() {
+    TeamModel.indexOf("XYZ");
+  }
+
+  @Test
+  public void testEvalLoss() {
+    List<Drive> drives = Arrays.asList(
+        new Drive(1, "SEA", "NE", 1.0, 3.0),
+        new Drive(1, "NE", "SEA", 2.0, 1.0));
+    TeamModel model = new TeamModel().setConstant(0.5).setOffense("SEA", 1.0);
+
+    // Errors are 2 - 1.5 = 0.5 and -1 - 0.5 = -1.5.
+    assertEquals((0.25 + 2.25) / 2, model.evalLoss(drives, 0), 1e-12);
+    assertEquals((0.25 + 2.25) / 2 + 0.1 * 1.5, model.evalLoss(drives, 0.1),
+        1e-12);
+
+    TeamModel derivative = model.evalLossDerivative(drives);
+    assertEquals(-2 * (0.5 - 1.5), derivative.getConstant(), 1e-12);
+    assertEquals(-2 * 0.5, derivative.getOffense("SEA"), 1e-12);
+    assertEquals(2 * 0.5, derivative.getDefense("NE"), 1e-12);
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    TeamModel model = new TeamModel().setOffense("DEN", 2);
+    TeamModel copy = model.copy().setOffense("DEN", 3);
+    assertEquals(2, model.getOffense("DEN"), 1e-12);
+    assertEquals(3, copy.getOffense("DEN"), 1e-12);
+    assertEquals(2, copy.copyFrom(model).getOffense("DEN"), 1e-12);
+  }
+
+  @Test
+  public void testEvalLossFromStats() {
+    List<Drive> drives = Benchmarks.makeDrives(500, 3);
+    MatchupStats stats = MatchupStats.fromDrives(drives);
+    assertEquals(500, stats.getNumDrives());
+
+    TeamModel model = CoordinateDescent.findBestModel(
+        drives, 0.01, 1e-3, new TeamModel(), FitListener.NONE);
+    assertEquals(model.evalLoss(drives, 0.01), model.evalLoss(stats, 0.01),
+        1e-9);
+    TeamModel expected = model.evalLossDerivative(drives);
+    TeamModel actual = model.evalLossDerivative(stats);
+    assertEquals(0, actual.addScaledBy(-1, expected).norm0(), 1e-9);
+
+    // Removing drives from the statistics matches not including them.
+    MatchupStats first = MatchupStats.fromDrives(drives.subList(0, 200));
+    stats.addScaledBy(-1, first);
+    assertEquals(model.evalLoss(drives.subList(200, 500), 0),
+        model.evalLoss(stats, 0), 1e-9);
+  }
+
+  /** Returns a model of made up teams with random parameters. */
+  private static TeamModel makeModel() {
+    TeamRegistry teams = new TeamRegistry(Arrays.asList("LAC", "SEA", "NE"),
+        Arrays.asList(new TeamRegistry.Alias("SD", "LAC", 1961, 2016)));
+    TeamModel model = new TeamModel(teams).setConstant(Math.PI / 10);
+    for (int t = 0; t < teams.size(); t++)
+      model.setOffense(t, Math.sqrt(t + 2) - 1).setDefense(t, 1.0 / (t + 3));
+    return model;
+  }
+
+  /** Asserts that the two models have exactly the same teams and values. */
+  private static void assertSameModel(TeamModel expected, TeamModel actual) {
+    assertEquals(expected.getTeams().getNames(), actual.getTeams().getNames());
+    assertEquals(expected.getTeams().indexOf("SD", 2016),
+        actual.getTeams().indexOf("SD", 2016));
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm1(), 0);
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    TeamModel model = makeModel();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model.writeTo(new DataOutputStream(bytes));
+    assertSameModel(model, TeamModel.readFrom(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()))));
+  }
+
+  @Test
+  public void testCsvRoundTrip() throws IOException {
+    TeamModel model = makeModel();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model.writeCsvTo(new PrintStream(bytes));
+    assertSameModel(model,
+        TeamModel.readCsvFrom(new StringReader(bytes.toString())));
+  }
+
+  @Test
+  public void testCsvRoundTripQuotesNames() throws IOException {
+    TeamRegistry teams = new TeamRegistry(Arrays.asList("A,B", "Q\"T"),
+        Arrays.asList(new TeamRegistry.Alias("SD", "A,B", 1961, 2016)));
+    TeamModel model = new TeamModel(teams).setConstant(0.5)
+        .setOffense(0, 0.25).setDefense(1, -0.125);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model.writeCsvTo(new PrintStream(bytes));
+    assertTrue(bytes.toString().contains("\nconstant,,0.5,\n"));
+    assertSameModel(model,
+        TeamModel.readCsvFrom(new StringReader(bytes.toString())));
+  }
+
+  @Test
+  public void testPredictMatchups() throws IOException {
+    TeamModel model = makeModel();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new MatchupPredictor(model).predictAll(new StringReader(
+        "offense,defense,season\nSEA,NE,2017\nSD,SEA,2016\nXYZ,NE\n" +
+        "SEA,NE,oops\nNE,LAC\n"),
+        new PrintStream(bytes));
+    assertEquals(String.format(
+        "offense,defense,predicted\nSEA,NE,%.4f\nSD,SEA,%.4f\nNE,LAC,%.4f\n",
+        model.predict(1, 2), model.predict(0, 1), model.predict(2, 0)),
+        bytes.toString());
+  }
+}
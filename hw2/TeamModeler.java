@@ -6,9 +6,15 @@ NFL Modeling
 
 package cse417;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
 
 import java.time.temporal.WeekFields;
 import java.util.ArrayList;
@@ -17,12 +23,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-
-import java.util.function.DoubleFunction;
-
-import static cse417.TeamModel.TEAMS;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * Program that finds {@code TeamModel}s that best fit provided data. The
@@ -30,6 +35,62 @@ import static cse417.TeamModel.TEAMS;
  * fitting historical data. Without that option, this just finds the best model
  * using the last {@code WEEKS} weeks of data. The latter supports using either
  * a fixed penalty or finding the model with a fixed number of non-zero params.
+ * <p>
+ * Drives may come from any number of seasons (given by an optional sixth column
+ * in the CSV), and the teams are those named in the data. The option
+ * {@code --aliases} names a CSV of (alias, team, first season, last season)
+ * rows so that, e.g., a team that relocated is treated as one team. The option
+ * {@code --weeks} changes {@code WEEKS}, and {@code --max-week} changes the
+ * last week of each season that is used (16 by default).
+ * <p>
+ * The option {@code --solver} chooses how each model is fit: {@code coordinate}
+ * (the default), {@code gradient}, or the slower {@code ternary}, {@code golden},
+ * or {@code brent}. With {@code --train}, the option
+ * {@code --threads} sets how many periods of weeks are fit in parallel.
+ * <p>
+ * The option {@code --cv} cross-validates the penalties tried by {@code --train}
+ * and prints the mean and standard deviation of the test error of each along
+ * with the best one. With {@code --cv=rolling}, each fold trains on
+ * {@code WEEKS} consecutive weeks and tests on the next week. With
+ * {@code --cv=k} for a number {@code k}, the drives of the last {@code WEEKS}
+ * weeks are split into {@code k} folds instead. The folds are evaluated on
+ * {@code --threads} threads.
+ * <p>
+ * The option {@code --save} writes the model that is found to the given file,
+ * as text if the name ends in ".csv" and in binary otherwise, so that
+ * {@code MatchupPredictor} can make predictions with it later.
+ * <p>
+ * The option {@code --half-life} fits the model to all of the drives rather
+ * than the last {@code WEEKS} weeks, with the weight of each drive in the loss
+ * halving every that many weeks into the past.
+ * <p>
+ * The option {@code --bootstrap} refits the model with the given penalty to
+ * that many bootstrap samples of the drives, on {@code --threads} threads, and
+ * prints a {@code CONFIDENCE} interval for each parameter before the model.
+ * <p>
+ * The option {@code --progress} writes a JSON object per line to the given
+ * file (or standard error if it is "-") at the start and end of every fit and
+ * after every sweep over the parameters, giving the time taken, the change
+ * made, and the number of times the loss was evaluated. The option
+ * {@code --verbose} instead prints every parameter as it is updated.
+ * <p>
+ * The option {@code --stream} fits the last {@code WEEKS} weeks of drives and
+ * then keeps adding drives read from the given file (or standard input if it
+ * is "-"), in the same CSV format, to that window of weeks. The file is
+ * followed as it grows, like {@code tail -f}, so this runs until stopped.
+ * After every {@code --refit-every} drives (by default,
+ * {@code STREAM_REFIT_EVERY}), the model is refit starting from the last one
+ * and printed, and written to the {@code --save} file if one is given. It is
+ * also refit once a drive has waited {@code --max-latency} seconds (by
+ * default, {@code STREAM_MAX_LATENCY}) or the file has no more drives yet.
+ * <p>
+ * The option {@code --features} fits a {@code FeatureModel} with terms beyond
+ * those of a {@code TeamModel}, given as a comma-separated list. With
+ * {@code home}, the model includes an advantage for playing at home, using
+ * the home team given in an optional seventh column of the CSV. With
+ * {@code variance}, the model is refit with each drive weighted inversely to
+ * the variance of the residuals of its offense and defense, and the standard
+ * deviation of each team's residuals is printed after the model.
  */
 public class TeamModeler {
 
@@ -38,12 +99,68 @@ public class TeamModeler {
      */
     private static int WEEKS = 6;
 
+    /**
+     * Drives in later weeks of each season are ignored.
+     */
+    private static int MAX_WEEK = 16;
+
     /**
      * Tolerance parameter used by coordinate descent. The method will stop
      * iterating when the L0 norm of the change is less than this amount.
      */
     private static double TOLERANCE = 5e-3;
 
+    /**
+     * Methods that can be used to fit the parameters of a model.
+     */
+    enum Solver {
+        /** Coordinate descent using ternary search for each parameter. */
+        TERNARY,
+        /** Coordinate descent using golden-section search for each parameter. */
+        GOLDEN,
+        /** Coordinate descent using Brent's method for each parameter. */
+        BRENT,
+        /** Coordinate descent solving for each parameter in closed form. */
+        COORDINATE,
+        /** Accelerated proximal gradient descent on all parameters at once. */
+        GRADIENT
+    }
+
+    /**
+     * Probability covered by the intervals printed by {@code --bootstrap}.
+     */
+    private static final double CONFIDENCE = 0.95;
+
+    /**
+     * Seed for the random samples drawn by {@code --bootstrap}.
+     */
+    private static final long BOOTSTRAP_SEED = 417;
+
+    /**
+     * Number of drives added by {@code --stream} between refits of the model.
+     */
+    private static final int STREAM_REFIT_EVERY = 100;
+
+    /**
+     * Seconds that a drive added by {@code --stream} can wait for a refit.
+     */
+    private static final double STREAM_MAX_LATENCY = 10;
+
+    /**
+     * Method used by {@code findBestModel} to fit the parameters.
+     */
+    private static Solver solver = Solver.COORDINATE;
+
+    /**
+     * Receives progress reports from every model that is fit.
+     */
+    private static FitListener listener = FitListener.NONE;
+
+    /**
+     * Penalties tried by {@code train}, in decreasing order from 0.050 to 0.
+     */
+    static final double[] PENALTIES = makePenalties();
+
     /**
      * Entry point for a program to build a model of NFL teams.
      */
@@ -53,153 +170,500 @@ public class TeamModeler {
         argParser.addOption("penalty", Double.class);
         argParser.addOption("num-nonzero", Integer.class);
         argParser.addOption("verbose", Boolean.class);
+        argParser.addOption("progress", String.class);
+        argParser.addOption("solver", String.class);
+        argParser.addOption("threads", Integer.class);
+        argParser.addOption("cache", String.class);
+        argParser.addOption("incremental", String.class);
+        argParser.addOption("weeks", Integer.class);
+        argParser.addOption("max-week", Integer.class);
+        argParser.addOption("aliases", String.class);
+        argParser.addOption("cv", String.class);
+        argParser.addOption("save", String.class);
+        argParser.addOption("half-life", Double.class);
+        argParser.addOption("bootstrap", Integer.class);
+        argParser.addOption("stream", String.class);
+        argParser.addOption("refit-every", Integer.class);
+        argParser.addOption("max-latency", Double.class);
+        argParser.addOption("features", String.class);
         args = argParser.parseArgs(args, 1, 1);
 
+        if (argParser.hasOption("weeks")) {
+            WEEKS = argParser.getIntegerOption("weeks");
+        }
+        if (argParser.hasOption("max-week")) {
+            MAX_WEEK = argParser.getIntegerOption("max-week");
+        }
+
+        if (argParser.hasOption("bootstrap") &&
+                argParser.hasOption("num-nonzero")) {
+            System.err.println("--bootstrap requires --penalty not --num-nonzero");
+            System.exit(1);
+        }
+        if (argParser.hasOption("features") &&
+                (argParser.hasOption("num-nonzero") ||
+                 argParser.hasOption("bootstrap") ||
+                 argParser.hasOption("save"))) {
+            System.err.println("--features cannot be used with --num-nonzero, " +
+                    "--bootstrap, or --save");
+            System.exit(1);
+        }
+
+        if (argParser.hasOption("progress")) {
+            String progress = argParser.getStringOption("progress");
+            listener = new JsonLinesFitListener(progress.equals("-") ? System.err :
+                    new PrintStream(new BufferedOutputStream(
+                            new FileOutputStream(progress))));
+        } else if (argParser.hasOption("verbose")) {
+            listener = new VerboseFitListener(System.out);
+        }
+
+        if (argParser.hasOption("solver")) {
+            try {
+                solver = Solver.valueOf(
+                        argParser.getStringOption("solver").toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                System.err.println("Unknown solver: " +
+                        argParser.getStringOption("solver"));
+                System.exit(1);
+            }
+        }
+
+        int threads = argParser.hasOption("threads") ?
+                argParser.getIntegerOption("threads") : 1;
+        if (threads <= 0) {
+            System.err.println("--threads must be positive");
+            System.exit(1);
+        }
+
+        DriveStore allDrives = loadDrives(args[0],
+                argParser.hasOption("cache") ?
+                        argParser.getStringOption("cache") : null,
+                argParser.hasOption("aliases") ?
+                        TeamRegistry.loadAliases(argParser.getStringOption("aliases")) :
+                        Collections.<TeamRegistry.Alias>emptyList());
         if (argParser.hasOption("train")) {
-            train(args[0]);
+            train(allDrives, threads, System.out);
+        } else if (argParser.hasOption("cv")) {
+            crossValidate(allDrives, argParser.getStringOption("cv"), threads);
+        } else if (argParser.hasOption("stream")) {
+            stream(allDrives, argParser.getStringOption("stream"),
+                    argParser.hasOption("penalty") ?
+                    argParser.getDoubleOption("penalty") : 0.0,
+                    argParser.hasOption("refit-every") ?
+                    argParser.getIntegerOption("refit-every") :
+                    STREAM_REFIT_EVERY,
+                    argParser.hasOption("max-latency") ?
+                    argParser.getDoubleOption("max-latency") :
+                    STREAM_MAX_LATENCY,
+                    argParser.hasOption("save") ?
+                    argParser.getStringOption("save") : null);
+        } else if (argParser.hasOption("incremental")) {
+            double penalty = argParser.hasOption("penalty") ?
+                    argParser.getDoubleOption("penalty") : 0.0;
+            TeamModel model = updateIncrementally(allDrives,
+                    argParser.getStringOption("incremental"), penalty);
+            model.printTo(System.out);
+            if (argParser.hasOption("save")) {
+                model.save(argParser.getStringOption("save"));
+            }
         } else {
-            // Find the drives in the last WEEKS worth of weeks.
-            List<Drive> drives = loadDrives(args[0], 1, 16);
-            int maxWeek = drives.stream().map((d) -> d.week)
-                    .max((a, b) -> Double.compare(a, b)).get();
-            drives = drives.stream().filter((d) -> maxWeek - WEEKS + 1 <= d.week)
-                    .collect(Collectors.toList());
+            // Find the drives in the last WEEKS worth of weeks or, with a
+            // half-life, all of the drives weighted by how recent they are.
+            DriveStore drives;
+            double[] weights = null;
+            if (argParser.hasOption("half-life")) {
+                drives = allDrives;
+                weights = allDrives.decayWeights(
+                        argParser.getDoubleOption("half-life"));
+            } else {
+                int[] weeks = allDrives.distinctWeeks();
+                drives = allDrives.weeks(
+                        weeks[Math.max(0, weeks.length - WEEKS)],
+                        weeks[weeks.length - 1]);
+            }
 
             TeamModel model;
-            if (argParser.hasOption("num-nonzero")) {
-                model = findBestSparseModel(drives,
-                        argParser.getIntegerOption("num-nonzero"), TOLERANCE,
-                        argParser.hasOption("verbose"));
+            if (argParser.hasOption("features")) {
+                fitFeatures(drives, weights,
+                        argParser.getStringOption("features"),
+                        argParser.hasOption("penalty") ?
+                        argParser.getDoubleOption("penalty") : 0.0);
+                return;
+            } else if (argParser.hasOption("num-nonzero")) {
+                model = findBestSparseModel(drives, weights,
+                        argParser.getIntegerOption("num-nonzero"), TOLERANCE);
             } else {
                 double penalty = argParser.hasOption("penalty") ?
                         argParser.getDoubleOption("penalty") : 0.0;
-                model = findBestModel(drives, penalty, TOLERANCE,
-                        argParser.hasOption("verbose"));
+                model = findBestModel(drives, weights, penalty, TOLERANCE,
+                        new TeamModel(drives.getTeams()));
+                if (argParser.hasOption("bootstrap")) {
+                    bootstrap(drives, weights, penalty, model,
+                            argParser.getIntegerOption("bootstrap"), threads);
+                }
             }
             model.printTo(System.out);
-
+            if (argParser.hasOption("save")) {
+                model.save(argParser.getStringOption("save"));
+            }
         }
     }
 
     /**
-     * Returns the drives described in the given file from games in weeks of the
-     * NFL season in the given range ({@code minWeek} to {@code maxWeek}).
+     * Returns the drives described in the given file from games in weeks 1 to
+     * {@code MAX_WEEK} of each NFL season, with team names resolved using the
+     * given aliases. If {@code cacheName} is not null, the drives are read from
+     * that binary file instead when it is up to date, and otherwise it is
+     * written for next time.
      */
-    private static List<Drive> loadDrives(
-            String fileName, int minWeek, int maxWeek) throws IOException {
-        List<Drive> drives = new ArrayList<Drive>();
-        CsvParser parser = new CsvParser(fileName, true, new Object[]{
-                String.class, String.class, Integer.class, Float.class, Float.class
-        });
-        while (parser.hasNext()) {
-            String[] parts = parser.next();
-            int week = Integer.parseInt(parts[2]);
-            if (minWeek <= week && week <= maxWeek) {
-                double expStartPts = Double.parseDouble(parts[3]);
-                double expEndPts = Double.parseDouble(parts[4]);
-                drives.add(new Drive(week, parts[0], parts[1], expStartPts, expEndPts));
-            }
-        }
-        return drives;
+    private static DriveStore loadDrives(String fileName, String cacheName,
+            List<TeamRegistry.Alias> aliases) throws IOException {
+        DriveStore drives = (cacheName != null) ?
+                DriveStore.open(fileName, cacheName, aliases) :
+                DriveStore.fromCsv(fileName, aliases);
+        return drives.withWeeksOfSeasonAtMost(MAX_WEEK);
     }
 
     /**
      * Fills in the given maps with the best model of how the offenses increase
      * the expected points in each drive and how the defenses decrease it.
      *
-     * @param drives  List of the drives that the model should describe.
+     * @param drives  Drives that the model should describe.
      * @param penalty Constant factor on the penalty term of the loss function.
      * @param tol     Stop when the L0 change per iteration less than this amount.
-     * @param verbose If true, prints progress of the model fitting process.
      */
     private static TeamModel findBestModel(
-            final List<Drive> drives, double penalty, double tol, boolean verbose) {
-        TeamModel best = new TeamModel();  // start with all zeros
+            final DriveStore drives, double penalty, double tol) {
+        return findBestModel(drives, penalty, tol,
+                new TeamModel(drives.getTeams()));
+    }
+
+    /**
+     * As above but starting the search from the given model rather than all
+     * zeros. (The given model is not modified.) Starting from the best model for
+     * a nearby penalty usually takes far fewer iterations.
+     */
+    private static TeamModel findBestModel(final DriveStore drives,
+            double penalty, double tol, TeamModel start) {
+        return findBestModel(drives, null, penalty, tol, start);
+    }
+
+    /**
+     * As above but with the given weight on each drive in the loss function.
+     * If {@code weights} is null, every drive has weight one.
+     */
+    private static TeamModel findBestModel(final DriveStore drives,
+            double[] weights, double penalty, double tol, TeamModel start) {
+        switch (solver) {
+            case TERNARY:
+            case GOLDEN:
+            case BRENT:
+                return findBestModelBySearch(
+                        solver, drives, weights, penalty, tol, start, listener);
+            case COORDINATE:
+                return CoordinateDescent.findBestModel(
+                        drives, weights, penalty, tol, start, listener);
+            case GRADIENT:
+                return ProximalGradient.findBestModel(
+                        drives, weights, penalty, tol, start, listener);
+            default:
+                throw new AssertionError("impossible");
+        }
+    }
+
+    /**
+     * Implements {@code findBestModel} by tuning one parameter at a time with a
+     * search over the full loss function, using the given kind of search. This
+     * is much slower than {@code CoordinateDescent} but is kept as a reference
+     * implementation.
+     */
+    static TeamModel findBestModelBySearch(Solver search, final List<Drive> drives,
+            double penalty, double tol, TeamModel start, FitListener listener) {
+        return findBestModelBySearch(search,
+                DriveStore.fromDrives(drives, start.getTeams()), null,
+                penalty, tol, start, listener);
+    }
+
+    /**
+     * As above but with the drives in a {@code DriveStore} and the given
+     * weights (or null) on them.
+     */
+    static TeamModel findBestModelBySearch(Solver search, final DriveStore drives,
+            final double[] weights, double penalty, double tol, TeamModel start,
+            FitListener listener) {
+        listener.fitStarted(search.name().toLowerCase(), start.getTeams(), penalty);
+        long fitStart = System.nanoTime();
+        final long[] evaluations = new long[1];
+        int sweeps = 0;
+
+        TeamModel best = start.copy();
         double change = 10000;
         while (change > tol) {
+            long sweepStart = System.nanoTime();
             TeamModel prev = best.copy();
 
             // tune offense
-            for (String team : TEAMS) {
-
-                double newOffense = Optimizer.findMinimumOfUnimodal(
-                        t -> best.copy().setOffense(team, t).evalLoss(drives, penalty), -8, 8);
-                if (verbose) {
-                    System.out.println("Offense for " + team + " is now " + newOffense);
-                }
+            for (int team = 0; team < best.getNumTeams(); team++) {
+                final int index = team;
+                double newOffense = findMinimum(search, t -> {
+                    evaluations[0]++;
+                    return best.setOffense(index, t).evalLoss(drives, weights, penalty);
+                });
                 best.setOffense(team, newOffense);
+                listener.parameterChanged(
+                        FitListener.Parameter.OFFENSE, team, newOffense);
             }
 
             // tune defense
-            for (String team : TEAMS) {
-
-                double newDefense = Optimizer.findMinimumOfUnimodal(
-                        t -> best.copy().setDefense(team, t).evalLoss(drives, penalty), -8, 8);
-                if (verbose) {
-                    System.out.println("Defense for " + team + " is now " + newDefense);
-                }
+            for (int team = 0; team < best.getNumTeams(); team++) {
+                final int index = team;
+                double newDefense = findMinimum(search, t -> {
+                    evaluations[0]++;
+                    return best.setDefense(index, t).evalLoss(drives, weights, penalty);
+                });
                 best.setDefense(team, newDefense);
+                listener.parameterChanged(
+                        FitListener.Parameter.DEFENSE, team, newDefense);
             }
 
             // tune constant
-            double newConstant = Optimizer.findMinimumOfUnimodal(
-                    t -> best.copy().setConstant(t).evalLoss(drives, penalty), -8, 8);
-            if (verbose) {
-                System.out.println("Constant is now " + newConstant);
-            }
+            double newConstant = findMinimum(search, t -> {
+                evaluations[0]++;
+                return best.setConstant(t).evalLoss(drives, weights, penalty);
+            });
             best.setConstant(newConstant);
-
+            listener.parameterChanged(
+                    FitListener.Parameter.CONSTANT, -1, newConstant);
 
             // check change
             change = best.copy().addScaledBy(-1, prev).norm0();
-            if (verbose) {
-                System.out.println("Difference between new model and old model: " + change);
-            }
+            listener.sweepFinished(++sweeps, System.nanoTime() - sweepStart,
+                    change, evaluations[0]);
         }
+        listener.fitFinished(sweeps, evaluations[0], System.nanoTime() - fitStart);
         return best;
     }
 
+    /**
+     * Returns the minimum in [-LIMIT, LIMIT] (see {@code TeamModel.LIMIT}) of
+     * the given function (which should be a loss as one parameter changes)
+     * found by the given kind of search.
+     */
+    private static double findMinimum(Solver search, DoubleUnaryOperator f) {
+        final double limit = TeamModel.LIMIT;
+        switch (search) {
+            case TERNARY:
+                return Optimizer.findMinimumOfUnimodalPrimitive(f, -limit, limit);
+            case GOLDEN:
+                return Optimizer.findMinimumByGoldenSection(f, -limit, limit);
+            case BRENT:
+                return Optimizer.findMinimumByBrent(f, -limit, limit);
+            default:
+                throw new AssertionError("not a search: " + search);
+        }
+    }
+
+    /**
+     * Returns the best model for the drives in the last {@code WEEKS} weeks,
+     * updating the model and statistics saved in the given file by an earlier
+     * run rather than refitting from scratch. (If the file does not exist, this
+     * creates it.) All of the drives are still loaded, but only the weeks that
+     * are new since that run, plus its last week, are summarized again, and the
+     * fit starts from the saved model.
+     */
+    private static TeamModel updateIncrementally(DriveStore drives,
+            String stateName, double penalty) throws IOException {
+        RollingWindow window = new File(stateName).exists() ?
+                RollingWindow.readFrom(stateName) : null;
+        if (window == null || window.getNumWeeks() != WEEKS ||
+                !window.getTeams().hasSameTeams(drives.getTeams())) {
+            window = new RollingWindow(WEEKS, drives.getTeams());
+        }
+        window.slideTo(drives);
+        TeamModel model = window.fit(penalty, TOLERANCE, listener);
+        window.writeTo(stateName);
+        return model;
+    }
+
+    /**
+     * Fits the model for the drives in the last {@code WEEKS} weeks and then
+     * updates it with the drives read from the given source, as described for
+     * {@code --stream} above. Each refit model is printed and, if
+     * {@code saveName} is not null, saved to that file.
+     */
+    private static void stream(DriveStore drives, String source, double penalty,
+            int refitEvery, double maxLatency, String saveName)
+            throws IOException {
+        if (refitEvery <= 0) {
+            System.err.println("--refit-every must be positive");
+            System.exit(1);
+        }
+        if (!(maxLatency >= 0)) {
+            System.err.println("--max-latency must be non-negative");
+            System.exit(1);
+        }
+        RollingWindow window = new RollingWindow(WEEKS, drives.getTeams());
+        window.slideTo(drives);
+        window.fit(penalty, TOLERANCE, listener);
+
+        DriveStream stream = new DriveStream(window, MAX_WEEK, penalty,
+                TOLERANCE, refitEvery, Math.round(1000 * maxLatency), listener);
+        try (Reader in = source.equals("-") ?
+                new InputStreamReader(System.in) :
+                new DriveStream.FollowingReader(new FileReader(source))) {
+            stream.run(in, (model, numDrives) -> {
+                System.out.printf("After %d streamed drives (%d skipped):\n\n",
+                        numDrives, stream.getNumSkipped());
+                model.printTo(System.out);
+                System.out.println();
+                System.out.flush();
+                if (saveName != null) {
+                    model.save(saveName);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the best model for each of the given penalties, which must be in
+     * decreasing order. Each model is found starting from the one for the
+     * previous penalty, so fitting the whole path costs little more than
+     * fitting the first model, which has the most zero parameters.
+     */
+    private static List<TeamModel> findBestModels(
+            final DriveStore drives, double[] penalties, double tol) {
+        List<TeamModel> models = new ArrayList<>();
+        TeamModel prev = new TeamModel(drives.getTeams());
+        for (int k = 0; k < penalties.length; k++) {
+            assert k == 0 || penalties[k] <= penalties[k - 1];
+            prev = findBestModel(drives, penalties[k], tol, prev);
+            models.add(prev);
+        }
+        return models;
+    }
+
     /**
      * Like {@code findBestModel} above but taking the desired number of non-zero
      * parameters in the model instead of the penalty.
      * <p>
      * If increasing the penalty by less than 0.0001 changes the number of
-     * non-zero parameters from less than the desired amount to more than the
+     * non-zero parameters from more than the desired amount to less than the
      * desired amount, then this will just return the model with fewer parameters
      */
-    private static TeamModel findBestSparseModel(
-            final List<Drive> drives, int numNonZeros, double tol, boolean verbose) {
-
-        int thisNumNonZeros = 0;
-        double i = 0;
-        double j = 0.05;
-        double prevM = 0;
-        TeamModel model = new TeamModel();
-        while (i < j) {
-            double m = (i + j) / 2;
-            if (verbose) {
-                System.out.printf("Differences between new and old m: %.6f\n", Math.abs(m - prevM));
-            }
-            // return model if the change is less than 0.0001
-            if (Math.abs(m - prevM) < 0.0001) {
-                return model;
-            } else {
-                prevM = m;
+    private static TeamModel findBestSparseModel(final DriveStore drives,
+            double[] weights, int numNonZeros, double tol) {
+        SparseModelSearch search = new SparseModelSearch(drives, weights, tol);
+        TeamModel model = search.find(numNonZeros);
+        System.err.printf("Fit %d models to find %d non-zero parameters\n",
+                search.numFits, numNonZeros);
+        return model;
+    }
+
+    /**
+     * Searches for the penalty giving a model with a desired number of non-zero
+     * parameters. Since larger penalties give models with fewer non-zero
+     * parameters, this keeps a range of penalties bracketing the desired count
+     * and shrinks it until the count is found.
+     * <p>
+     * Every fitted model is cached by its penalty, and each new fit starts from
+     * the cached model with the closest penalty, preferring larger ones. The
+     * next penalty to try is found by interpolating the counts at the ends of
+     * the bracket, which usually needs fewer fits than bisecting. A penalty
+     * that was already fit is not fit again. Each penalty tried while shrinking
+     * the bracket is reported to {@code listener}.
+     */
+    static class SparseModelSearch {
+
+        /** Largest penalty that is tried. */
+        private static final double MAX_PENALTY = 0.05;
+
+        /** Stop once the bracket of penalties is shorter than this. */
+        private static final double MIN_WIDTH = 0.0001;
+
+        /** Parameters with magnitude below this are counted as zero. */
+        static final double ZERO_TOL = 0.05;
+
+        private final DriveStore drives;
+        private final double[] weights;
+        private final double tol;
+
+        /** Models fitted so far, indexed by their penalty. */
+        private final TreeMap<Double, TeamModel> fits = new TreeMap<>();
+
+        /** Number of models that have been fitted. */
+        int numFits;
+
+        /** Penalty of the model last returned by {@code find}. */
+        double penalty;
+
+        SparseModelSearch(DriveStore drives, double[] weights, double tol) {
+            this.drives = drives;
+            this.weights = weights;
+            this.tol = tol;
+        }
+
+        /**
+         * Returns the model with the given number of non-zero parameters or, if
+         * there is none, the closest one with fewer.
+         */
+        TeamModel find(int numNonZeros) {
+            // A zero penalty allows every parameter to be non-zero, so if that
+            // many are wanted, no search is needed.
+            int numParameters =
+                    new TeamModel(drives.getTeams()).getNumParameters();
+            if (numNonZeros >= numParameters) {
+                penalty = 0;
+                return fit(0);
             }
-            model = findBestModel(drives, m, tol, verbose);
-            thisNumNonZeros = model.countNonZeroParameters(0.05);
-            if (verbose) {
-                System.out.printf("Current penalty: %.5f, Current Number of Non Zero Params: %2d\n", m, thisNumNonZeros);
+
+            // Inv: count(lo) > numNonZeros >= count(hi). The zero penalty need
+            // not be fit; we treat its count as larger than the number of
+            // parameters.
+            double lo = 0;
+            int loCount = numParameters + 1;
+            double hi = MAX_PENALTY;
+            int hiCount = fit(hi).countNonZeroParameters(ZERO_TOL);
+            if (hiCount > numNonZeros) {
+                penalty = hi;
+                return fits.get(hi);  // as sparse as we can do
             }
-            if (thisNumNonZeros > numNonZeros) {
-                i = m + 0.0001;
-            } else if (thisNumNonZeros == numNonZeros) {
-                return model;
-            } else {
-                j = m;
+
+            while (hiCount != numNonZeros && hi - lo >= MIN_WIDTH) {
+                double frac = (double) (loCount - numNonZeros) / (loCount - hiCount);
+                frac = Math.max(0.1, Math.min(0.9, frac));
+                double m = lo + frac * (hi - lo);
+                int count = fit(m).countNonZeroParameters(ZERO_TOL);
+                listener.penaltyTried(m, count);
+                if (count > numNonZeros) {
+                    lo = m;
+                    loCount = count;
+                } else {
+                    hi = m;
+                    hiCount = count;
+                }
+            }
+            penalty = hi;
+            return fits.get(hi);
+        }
+
+        /** Returns the best model for the given penalty. */
+        private TeamModel fit(double penalty) {
+            TeamModel cached = fits.get(penalty);
+            if (cached != null) {
+                return cached;
+            }
+            Map.Entry<Double, TeamModel> start = fits.ceilingEntry(penalty);
+            if (start == null) {
+                start = fits.floorEntry(penalty);
             }
+            TeamModel model = findBestModel(drives, weights, penalty, tol,
+                    (start != null) ? start.getValue()
+                            : new TeamModel(drives.getTeams()));
+            fits.put(penalty, model);
+            numFits += 1;
+            return model;
         }
-        return null;
     }
 
     /**
@@ -215,33 +679,208 @@ public class TeamModeler {
      * (This normalization is necessary because some weeks are harder to predict
      * than others, and we want the model that works best on an average week not
      * just the worst week.)
+     * <p>
+     * The periods are independent, so they are fit on a pool of {@code threads}
+     * threads. The results are still printed to {@code out} in order of the
+     * periods. (The penalties for one period are fit in sequence since each
+     * model is the starting point for the next.)
      */
-    private static void train(String fileName) throws IOException {
-        for (int i = 1; i + WEEKS < 17; i++) {
-            List<Drive> drives = loadDrives(fileName, i, i + WEEKS - 1);
-            List<Drive> testDrives = loadDrives(fileName, i + WEEKS, i + WEEKS);
-            List<TeamModel> models = new ArrayList<>();
+    static void train(DriveStore allDrives, int threads, PrintStream out) {
+        final int[] weeks = allDrives.distinctWeeks();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<String>> results = new ArrayList<>();
+            for (int i = 0; i + WEEKS < weeks.length; i++) {
+                final int first = i;
+                results.add(pool.submit(() -> trainPeriod(allDrives, weeks, first)));
+            }
+            for (ForkJoinTask<String> result : results) {
+                out.print(result.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-            double minError = 99999;
-            for (double penalty = 0.050; penalty >= 0.000; penalty -= 0.001) {
-                TeamModel best = findBestModel(drives, penalty, TOLERANCE, false);
-                models.add(best);
+    /**
+     * Returns the output of {@code train} for the period of {@code WEEKS+1}
+     * weeks starting with {@code weeks[first]}.
+     */
+    private static String trainPeriod(
+            DriveStore allDrives, int[] weeks, int first) {
+        DriveStore drives = allDrives.weeks(
+                weeks[first], weeks[first + WEEKS - 1]);
+        MatchupStats testDrives = MatchupStats.fromDrives(allDrives.weeks(
+                weeks[first + WEEKS], weeks[first + WEEKS]));
+        List<TeamModel> models = findBestModels(drives, PENALTIES, TOLERANCE);
+
+        double minError = 99999;
+        for (TeamModel model : models) {
+            double thisError = model.evalLoss(testDrives, 0.0);
+            if (thisError < minError) {
+                minError = thisError;
+            }
+        }
 
-                double thisError = best.evalLoss(testDrives, 0.0);
-                if (thisError < minError) {
-                    minError = thisError;
+        StringBuilder out = new StringBuilder();
+        for (TeamModel model : models) {
+            out.append(String.format("%02d %g\n", model.countNonZeroParameters(0.005),
+                    model.evalLoss(testDrives, 0.0) - minError));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Prints an interval for each parameter of the given model, which is the
+     * best for the given drives, weights (or null), and penalty, containing
+     * {@code CONFIDENCE} of its values in models fit to {@code numReplicates}
+     * bootstrap samples of the drives.
+     */
+    private static void bootstrap(final DriveStore drives, final double[] weights,
+            double penalty, TeamModel model, int numReplicates, int threads) {
+        Bootstrap result = new Bootstrap(drives, model, (d, counts, start) -> {
+            if (weights != null) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] *= weights[i];
                 }
             }
+            return findBestModel(d, counts, penalty, TOLERANCE, start);
+        }, numReplicates, BOOTSTRAP_SEED, threads);
+
+        TeamModel lower = result.getQuantile((1 - CONFIDENCE) / 2);
+        TeamModel upper = result.getQuantile((1 + CONFIDENCE) / 2);
+        System.out.printf("%.0f%% intervals from %d bootstrap samples\n\n",
+                100 * CONFIDENCE, numReplicates);
+        System.out.printf("Constant: [%5.2f, %5.2f]\n\n",
+                lower.getConstant(), upper.getConstant());
+        System.out.println("         Off            Def");
+        TeamRegistry teams = drives.getTeams();
+        for (int t = 0; t < teams.size(); t++) {
+            System.out.printf("%3s [%5.2f, %5.2f] [%5.2f, %5.2f]\n",
+                    teams.getName(t), lower.getOffense(t), upper.getOffense(t),
+                    lower.getDefense(t), upper.getDefense(t));
+        }
+        System.out.println();
+    }
 
-            // print
-            for (TeamModel model : models) {
-                System.out.printf("%02d %g\n", model.countNonZeroParameters(0.005), model.evalLoss(testDrives,
-                        0.0) - minError);
+    /**
+     * Prints the best {@code FeatureModel} for the given drives with the
+     * features of a {@code TeamModel} plus those in the given comma-separated
+     * list, as described for {@code --features} above.
+     */
+    private static void fitFeatures(final DriveStore store, double[] weights,
+            String names, double penalty) {
+        List<Feature> extra = new ArrayList<>();
+        boolean variance = false;
+        for (String name : names.split(",")) {
+            if (name.equals("home")) {
+                extra.add(Feature.homeField());
+            } else if (name.equals("variance")) {
+                variance = true;
+            } else {
+                System.err.println("Unknown feature: " + name);
+                System.exit(1);
+            }
+        }
+
+        // Features are computed from Drive objects, and the design matrix holds
+        // its own copy of their values anyway.
+        List<Drive> drives = store.toDrives();
+        TeamRegistry teams = store.getTeams();
+        FeatureModel model = FeatureModel.standard(
+                teams, extra.toArray(new Feature[0]));
+        DesignMatrix matrix = model.designMatrix(drives);
+        double[] changes = new double[drives.size()];
+        for (int i = 0; i < drives.size(); i++) {
+            changes[i] = drives.get(i).getChange();
+        }
+        model = CoordinateDescent.findBestModel(matrix, changes, weights,
+                penalty, TOLERANCE, model, listener);
+
+        double[][] variances = null;
+        if (variance) {
+            // Weight each drive by the inverse of its expected variance and
+            // refit, starting from the unweighted model.
+            variances = model.teamVariances(drives, matrix, weights);
+            double[] varianceWeights = new double[drives.size()];
+            for (int i = 0; i < drives.size(); i++) {
+                Drive drive = drives.get(i);
+                varianceWeights[i] = ((weights != null) ? weights[i] : 1) * 2 /
+                        (variances[0][drive.offenseId] +
+                         variances[1][drive.defenseId]);
+            }
+            model = CoordinateDescent.findBestModel(matrix, changes,
+                    varianceWeights, penalty, TOLERANCE, model, listener);
+        }
+
+        model.printTo(System.out);
+        if (variances != null) {
+            System.out.println();
+            System.out.println("   Off SD Def SD");
+            for (int t = 0; t < teams.size(); t++) {
+                System.out.printf("%3s %6.2f %6.2f\n", teams.getName(t),
+                        Math.sqrt(variances[0][t]), Math.sqrt(variances[1][t]));
             }
         }
     }
-}
 
+    /**
+     * Prints the mean and standard deviation over cross-validation folds of the
+     * test error for each penalty in {@code PENALTIES}, followed by the penalty
+     * with the smallest mean error. The folds are described by {@code method},
+     * which is either "rolling" or the number of folds to split the last
+     * {@code WEEKS} weeks into. Each fold starts its path of penalties from the
+     * model for the largest penalty fit to all the drives used.
+     */
+    private static void crossValidate(DriveStore allDrives, String method,
+            int threads) {
+        List<CrossValidation.Fold> folds;
+        DriveStore drives;
+        int[] weeks = allDrives.distinctWeeks();
+        if (method.equals("rolling")) {
+            folds = CrossValidation.rollingOrigin(allDrives, WEEKS);
+            drives = allDrives;
+        } else {
+            int k;
+            try {
+                k = Integer.parseInt(method);
+            } catch (NumberFormatException ex) {
+                k = 0;
+            }
+            if (k < 2) {
+                System.err.println("Unknown cross-validation method: " + method);
+                System.exit(1);
+            }
+            drives = allDrives.weeks(weeks[Math.max(0, weeks.length - WEEKS)],
+                    weeks[weeks.length - 1]);
+            folds = CrossValidation.kFold(drives, k);
+        }
+        if (folds.isEmpty()) {
+            System.err.println("Need more than " + WEEKS + " weeks of drives");
+            System.exit(1);
+        }
 
+        TeamModel start = findBestModel(drives, PENALTIES[0], TOLERANCE);
+        CrossValidation.Result result = CrossValidation.run(folds, PENALTIES,
+                (d, penalty, s) -> findBestModel(d, penalty, TOLERANCE, s),
+                start, threads);
 
+        for (int k = 0; k < result.getNumPenalties(); k++) {
+            System.out.printf("%.3f %g %g\n", result.getPenalty(k),
+                    result.getMean(k), result.getStdDev(k));
+        }
+        System.out.printf("Best penalty: %.3f (%d folds)\n",
+                result.getBestPenalty(), result.getNumFolds());
+    }
 
+    /**
+     * Returns the penalties from 0.050 down to 0.000 in steps of 0.001.
+     */
+    private static double[] makePenalties() {
+        List<Double> penalties = new ArrayList<>();
+        for (double penalty = 0.050; penalty >= 0.000; penalty -= 0.001) {
+            penalties.add(penalty);
+        }
+        return penalties.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+}
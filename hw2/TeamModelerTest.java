@@ -0,0 +1,371 @@
+package cse417;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static cse417.TeamModel.TEAMS;
+
+
+public class TeamModelerTest {
+
+  @Test
+  public void testCoordinateDescentMatchesTernarySearch() {
+    List<Drive> drives = Benchmarks.makeDrives(800, 417);
+    for (double penalty : new double[] { 0.0, 0.005, 0.03 }) {
+      TeamModel expected = TeamModeler.findBestModelBySearch(
+          TeamModeler.Solver.TERNARY, drives, penalty, 1e-6, new TeamModel(),
+          FitListener.NONE);
+      TeamModel actual = CoordinateDescent.findBestModel(
+          drives, penalty, 1e-6, new TeamModel(), FitListener.NONE);
+      assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-3);
+      assertEquals(expected.evalLoss(drives, penalty),
+          actual.evalLoss(drives, penalty), 1e-8);
+    }
+  }
+
+  @Test
+  public void testSearchesAgree() {
+    List<Drive> drives = Benchmarks.makeDrives(400, 8);
+    TeamModel expected = TeamModeler.findBestModelBySearch(
+        TeamModeler.Solver.TERNARY, drives, 0.01, 1e-6, new TeamModel(),
+        FitListener.NONE);
+    for (TeamModeler.Solver search : new TeamModeler.Solver[] {
+        TeamModeler.Solver.GOLDEN, TeamModeler.Solver.BRENT }) {
+      TeamModel actual = TeamModeler.findBestModelBySearch(
+          search, drives, 0.01, 1e-6, new TeamModel(), FitListener.NONE);
+      assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-3);
+    }
+  }
+
+  @Test
+  public void testProximalGradientMatchesCoordinateDescent() {
+    List<Drive> drives = Benchmarks.makeDrives(800, 5);
+    for (double penalty : new double[] { 0.0, 0.005, 0.02 }) {
+      TeamModel expected = CoordinateDescent.findBestModel(
+          drives, penalty, 1e-9, new TeamModel(), FitListener.NONE);
+      TeamModel actual = ProximalGradient.findBestModel(
+          drives, penalty, 1e-9, new TeamModel(), FitListener.NONE);
+      assertEquals(expected.evalLoss(drives, penalty),
+          actual.evalLoss(drives, penalty), 1e-9);
+
+      // Without a penalty, the best model is not unique.
+      if (penalty > 0)
+        assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-4);
+    }
+  }
+
+  @Test
+  public void testFitFromStatsMatchesDrives() {
+    List<Drive> drives = Benchmarks.makeDrives(600, 11);
+    TeamModel expected = CoordinateDescent.findBestModel(
+        drives, 0.01, 1e-9, new TeamModel(), FitListener.NONE);
+    TeamModel actual = CoordinateDescent.findBestModel(
+        MatchupStats.fromDrives(drives), 0.01, 1e-9, new TeamModel(),
+        FitListener.NONE);
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-6);
+  }
+
+  @Test
+  public void testRollingWindow() {
+    List<Drive> drives = Benchmarks.makeDrives(1600, 12);  // 100 per week
+    RollingWindow window = new RollingWindow(6, TeamRegistry.DEFAULT);
+    window.slideTo(DriveStore.fromDrives(drives).weeks(1, 8));
+    window.fit(0.01, 1e-9, FitListener.NONE);
+    assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8), window.getWeeks());
+
+    window.slideTo(DriveStore.fromDrives(drives).weeks(1, 10));
+    TeamModel actual = window.fit(0.01, 1e-9, FitListener.NONE);
+    assertEquals(600, window.getStats().getNumDrives());
+
+    TeamModel expected = CoordinateDescent.findBestModel(
+        DriveStore.fromDrives(drives).weeks(5, 10).toDrives(), 0.01, 1e-9,
+        new TeamModel(), FitListener.NONE);
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-6);
+  }
+
+  @Test
+  public void testDriveStream() throws IOException {
+    List<Drive> drives =
+        DriveStore.fromDrives(Benchmarks.makeDrives(1600, 13)).toDrives();
+    StringBuilder text = new StringBuilder("offense,defense,week,exp_start,exp_end\n");
+    for (int i = 0; i < drives.size(); i++) {
+      Drive d = drives.get(i);
+      text.append(d.offense + "," + d.defense + "," + d.week + "," +
+          d.expPointsAtStart + "," + d.expPointsAtEnd + "\n");
+      if (i == 700) {
+        // Four rows that are skipped (only the first row is a header), then
+        // one that is ignored.
+        text.append("XYZ,SEA,9,1.0,2.0\nSEA,ARI,9,oops,2.0\n");
+        text.append("SEA,ARI,1,1.0,2.0\n");
+        text.append("offense,defense,week,exp_start,exp_end\n");
+        text.append("SEA,ARI,17,1.0,2.0\n");
+      }
+    }
+
+    RollingWindow window = new RollingWindow(6, TeamRegistry.DEFAULT);
+    DriveStream stream = new DriveStream(window, 16, 0.01, 1e-9, 250,
+        Long.MAX_VALUE / 1000000, FitListener.NONE);
+    final List<Integer> fits = new ArrayList<>();
+    stream.run(new StringReader(text.toString()),
+        (model, numDrives) -> fits.add(numDrives));
+    assertEquals(Arrays.asList(250, 500, 750, 1000, 1250, 1500, 1600),
+        fits);
+    assertEquals(4, stream.getNumSkipped());
+    assertEquals(Arrays.asList(11, 12, 13, 14, 15, 16),
+        window.getWeeks());
+    assertEquals(600, window.getStats().getNumDrives());
+
+    TeamModel expected = CoordinateDescent.findBestModel(
+        DriveStore.fromDrives(drives).weeks(11, 16).toDrives(), 0.01, 1e-9,
+        new TeamModel(), FitListener.NONE);
+    TeamModel actual = window.getModel();
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-6);
+  }
+
+  @Test
+  public void testDriveStreamRefitsWhenIdle() throws IOException {
+    StringBuilder text = new StringBuilder("offense,defense,week,exp_start,exp_end\n");
+    for (Drive d : DriveStore.fromDrives(
+             Benchmarks.makeDrives(300, 16)).toDrives()) {
+      text.append(d.offense + "," + d.defense + "," + d.week + "," +
+          d.expPointsAtStart + "," + d.expPointsAtEnd + "\n");
+    }
+
+    // The file never ends, so the drives past the last multiple of 250 are
+    // only fit because the reader waits. Stop following it after that fit.
+    RollingWindow window = new RollingWindow(6, TeamRegistry.DEFAULT);
+    DriveStream stream = new DriveStream(window, 16, 0.01, 1e-9, 250,
+        Long.MAX_VALUE / 1000000, FitListener.NONE);
+    final List<Integer> fits = new ArrayList<>();
+    boolean stopped = false;
+    try {
+      stream.run(new DriveStream.FollowingReader(
+          new StringReader(text.toString())), (model, numDrives) -> {
+            fits.add(numDrives);
+            if (numDrives == 300)
+              Thread.currentThread().interrupt();
+          });
+    } catch (InterruptedIOException ex) {
+      stopped = true;
+    }
+    assertTrue(stopped);
+    assertEquals(Arrays.asList(250, 300), fits);
+
+    // With no latency allowed, every drive is fit as soon as it is added.
+    stream = new DriveStream(window, 16, 0.01, 1e-9, 250, 0, FitListener.NONE);
+    fits.clear();
+    stream.run(new StringReader("offense,defense,week,exp_start,exp_end\n" +
+        "SEA,ARI,16,1.0,2.0\nARI,SEA,16,1.0,0.0\n"),
+        (model, numDrives) -> fits.add(numDrives));
+    assertEquals(Arrays.asList(1, 2), fits);
+  }
+
+  @Test
+  public void testLargePenaltyGivesZeroModel() {
+    List<Drive> drives = Benchmarks.makeDrives(200, 1);
+    TeamModel model = CoordinateDescent.findBestModel(
+        drives, 100, 1e-6, new TeamModel(), FitListener.NONE);
+    assertEquals(0, model.norm1(), 0);
+  }
+
+  @Test
+  public void testSparseModelSearch() {
+    DriveStore drives = DriveStore.fromDrives(Benchmarks.makeDrives(800, 15));
+    TeamModeler.SparseModelSearch search =
+        new TeamModeler.SparseModelSearch(drives, null, 1e-9);
+    TeamModel model = search.find(12);
+    assertTrue(model.countNonZeroParameters(
+        TeamModeler.SparseModelSearch.ZERO_TOL) <= 12);
+    assertTrue(search.penalty > 0);
+    int numFits = search.numFits;
+    assertTrue(numFits > 1);
+
+    // Though it starts from a nearby fit, the model is the best one for its
+    // penalty.
+    TeamModel expected = CoordinateDescent.findBestModel(
+        drives, search.penalty, 1e-9, new TeamModel(), FitListener.NONE);
+    assertEquals(0, model.copy().addScaledBy(-1, expected).norm0(), 1e-6);
+
+    // The same search again uses only models already fit.
+    assertSame(model, search.find(12));
+    assertEquals(numFits, search.numFits);
+
+    // A denser model needs a smaller penalty.
+    double penalty = search.penalty;
+    TeamModel denser = search.find(30);
+    assertTrue(denser.countNonZeroParameters(
+        TeamModeler.SparseModelSearch.ZERO_TOL) <= 30);
+    assertTrue(search.penalty < penalty);
+
+    // If every parameter can be non-zero, only the zero penalty is fit.
+    TeamModeler.SparseModelSearch all =
+        new TeamModeler.SparseModelSearch(drives, null, 1e-9);
+    all.find(model.getNumParameters());
+    assertEquals(1, all.numFits);
+    assertEquals(0, all.penalty, 0);
+  }
+
+  /** Returns the output of train on the given drives with some threads. */
+  private static String train(DriveStore drives, int threads) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (PrintStream out = new PrintStream(bytes)) {
+      TeamModeler.train(drives, threads, out);
+    }
+    return bytes.toString();
+  }
+
+  @Test
+  public void testTrainThreadsMatchSerial() {
+    DriveStore drives = DriveStore.fromDrives(Benchmarks.makeDrives(1600, 14));
+    String serial = train(drives, 1);
+    // 10 periods of 6 weeks and the week after, with a line per penalty.
+    assertEquals(10 * TeamModeler.PENALTIES.length,
+        serial.split("\n").length);
+    assertEquals(serial, train(drives, 4));
+    assertEquals(serial, train(drives, 3));
+  }
+
+  @Test
+  public void testCrossValidation() {
+    DriveStore drives = DriveStore.fromDrives(Benchmarks.makeDrives(900, 3));
+    List<CrossValidation.Fold> folds = CrossValidation.kFold(drives, 3);
+    assertEquals(3, folds.size());
+    for (CrossValidation.Fold fold : folds) {
+      assertEquals(600, fold.train.size());
+      assertEquals(300, fold.test.getNumDrives());
+    }
+
+    double[] penalties = { 1.0, 0.01, 0.0 };
+    CrossValidation.Fitter fitter = (d, penalty, start) ->
+        CoordinateDescent.findBestModel(
+            d, penalty, 1e-9, start, FitListener.NONE);
+    CrossValidation.Result serial = CrossValidation.run(
+        folds, penalties, fitter, new TeamModel(), 1);
+    CrossValidation.Result parallel = CrossValidation.run(
+        folds, penalties, fitter, new TeamModel(), 3);
+    for (int f = 0; f < 3; f++) {
+      for (int k = 0; k < penalties.length; k++)
+        assertEquals(serial.getError(f, k), parallel.getError(f, k), 1e-12);
+    }
+
+    // The zero model should predict worse than the others.
+    assertTrue(serial.getMean(0) > serial.getMean(1));
+    assertTrue(serial.getBestIndex() > 0);
+    assertTrue(serial.getStdDev(1) > 0);
+  }
+
+  @Test
+  public void testWeightsMatchRepeatedDrives() {
+    List<Drive> drives = Benchmarks.makeDrives(500, 21);
+    double[] weights = new double[drives.size()];
+    List<Drive> repeated = new ArrayList<Drive>();
+    for (int i = 0; i < drives.size(); i++) {
+      weights[i] = 1 + i % 3;
+      for (int j = 0; j < weights[i]; j++)
+        repeated.add(drives.get(i));
+    }
+
+    TeamModel expected = CoordinateDescent.findBestModel(
+        repeated, 0.01, 1e-9, new TeamModel(), FitListener.NONE);
+    TeamModel actual = CoordinateDescent.findBestModel(
+        drives, weights, 0.01, 1e-9, new TeamModel(), FitListener.NONE);
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-6);
+    assertEquals(expected.evalLoss(repeated, 0.01),
+        actual.evalLoss(drives, weights, 0.01), 1e-9);
+
+    actual = ProximalGradient.findBestModel(
+        drives, weights, 0.01, 1e-9, new TeamModel(), FitListener.NONE);
+    assertEquals(0, actual.copy().addScaledBy(-1, expected).norm0(), 1e-4);
+  }
+
+  @Test
+  public void testBootstrap() {
+    DriveStore drives = DriveStore.fromDrives(Benchmarks.makeDrives(1000, 6));
+    TeamModel model = CoordinateDescent.findBestModel(
+        drives, 0.001, 1e-6, new TeamModel(), FitListener.NONE);
+    Bootstrap.Fitter fitter = (d, weights, start) ->
+        CoordinateDescent.findBestModel(
+            d, weights, 0.001, 1e-6, start, FitListener.NONE);
+    Bootstrap serial = new Bootstrap(drives, model, fitter, 40, 1, 1);
+    Bootstrap parallel = new Bootstrap(drives, model, fitter, 40, 1, 4);
+
+    TeamModel lower = serial.getQuantile(0.05);
+    TeamModel upper = serial.getQuantile(0.95);
+    assertEquals(0,
+        parallel.getQuantile(0.05).addScaledBy(-1, lower).norm0(), 0);
+    for (int t = 0; t < TEAMS.size(); t++) {
+      assertTrue(lower.getOffense(t) <= upper.getOffense(t));
+      assertTrue(upper.getOffense(t) - lower.getOffense(t) < 2);
+    }
+    assertTrue(lower.getConstant() < upper.getConstant());
+
+    double[] counts = Bootstrap.resample(100, new Random(3));
+    double total = 0;
+    for (double count : counts)
+      total += count;
+    assertEquals(100, total, 0);
+  }
+
+  @Test
+  public void testJsonLinesFlushesEachLine() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FitListener listener = new JsonLinesFitListener(
+        new PrintStream(new BufferedOutputStream(bytes)));
+    listener.fitStarted("coordinate", TeamRegistry.DEFAULT, 0.01);
+    listener.sweepFinished(1, 100, 3, 0);
+    assertEquals(2, bytes.toString().split("\n").length);
+    listener.penaltyTried(0.02, 12);
+    assertTrue(bytes.toString().contains(
+        "\"event\":\"penalty\",\"penalty\":0.02,\"nonZero\":12"));
+  }
+
+  @Test
+  public void testFitListenerCounts() {
+    List<Drive> drives = Benchmarks.makeDrives(300, 9);
+    final int[] counts = new int[3];  // starts, sweeps, finishes
+    final long[] evaluations = new long[1];
+    FitListener listener = new FitListener() {
+      @Override public void fitStarted(String method, TeamRegistry teams,
+          double penalty) {
+        counts[0]++;
+        counts[1] = 0;
+      }
+      @Override public void sweepFinished(int sweep, long nanos, double change,
+          long lossEvaluations) {
+        counts[1]++;
+        assertEquals(counts[1], sweep);
+        assertTrue(nanos >= 0);
+        evaluations[0] = lossEvaluations;
+      }
+      @Override public void fitFinished(int sweeps, long lossEvaluations,
+          long nanos) {
+        counts[2]++;
+        assertEquals(counts[1], sweeps);
+        assertEquals(evaluations[0], lossEvaluations);
+      }
+    };
+
+    TeamModeler.findBestModelBySearch(TeamModeler.Solver.BRENT, drives, 0.01,
+        1e-3, new TeamModel(), listener);
+    assertEquals(1, counts[0]);
+    assertEquals(1, counts[2]);
+    assertTrue(counts[1] > 0);
+    assertTrue(evaluations[0] > 65 * counts[1]);
+
+    ProximalGradient.findBestModel(drives, 0.01, 1e-3, new TeamModel(), listener);
+    assertEquals(2, counts[0]);
+    assertEquals(2, counts[2]);
+  }
+}
@@ -0,0 +1,164 @@
+package cse417;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * Assigns dense integer indexes to a set of teams, so that parameters and
+ * statistics for the teams can be stored in arrays. A registry can also
+ * include aliases that map other names to one of its teams during a range of
+ * seasons. For example, aliases allow a team that relocated (e.g., SD in 2016
+ * and LAC in 2017) to be treated as one team across seasons.
+ * <p>
+ * The teams in a registry are fixed when it is created. The default registry
+ * contains the teams in {@code TeamModel.TEAMS}. Others are usually built from
+ * the names that appear in data by {@code fromNames}.
+ */
+public class TeamRegistry {
+
+  /** Registry of the NFL teams in {@code TeamModel.TEAMS}, with no aliases. */
+  public static final TeamRegistry DEFAULT =
+      new TeamRegistry(TeamModel.TEAMS, Collections.<Alias>emptyList());
+
+  /** Records that one name refers to a team during a range of seasons. */
+  public static class Alias {
+
+    /** Name used in the data. */
+    public final String alias;
+
+    /** Name of the team to which it refers. */
+    public final String team;
+
+    /** First season in which the alias applies. */
+    public final int firstSeason;
+
+    /** Last season in which the alias applies. */
+    public final int lastSeason;
+
+    /** Creates an alias with the given description. */
+    public Alias(String alias, String team, int firstSeason, int lastSeason) {
+      assert firstSeason <= lastSeason;
+      this.alias = alias;
+      this.team = team;
+      this.firstSeason = firstSeason;
+      this.lastSeason = lastSeason;
+    }
+  }
+
+  /** Names of the teams, in order of their indexes. */
+  private final List<String> names;
+
+  /** Maps the name of each team to its index. */
+  private final Map<String, Integer> indexes;
+
+  /** Aliases for the teams, grouped by the alias. */
+  private final Map<String, List<Alias>> aliases;
+
+  /** Creates a registry with the given teams and aliases. */
+  public TeamRegistry(List<String> names, Collection<Alias> aliases) {
+    this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+    this.indexes = new HashMap<String, Integer>();
+    for (int i = 0; i < names.size(); i++) {
+      if (indexes.put(names.get(i), i) != null)
+        throw new IllegalArgumentException("duplicate team: " + names.get(i));
+    }
+
+    this.aliases = new HashMap<String, List<Alias>>();
+    for (Alias alias : aliases) {
+      if (!this.aliases.containsKey(alias.alias))
+        this.aliases.put(alias.alias, new ArrayList<Alias>());
+      this.aliases.get(alias.alias).add(alias);
+    }
+  }
+
+  /**
+   * Returns a registry with the given aliases and the teams that the given
+   * names refer to in the given seasons (after resolving aliases), in sorted
+   * order. {@code seasons} must have one entry for each name.
+   */
+  public static TeamRegistry fromNames(List<String> names, int[] seasons,
+      Collection<Alias> aliases) {
+    assert names.size() == seasons.length;
+    TeamRegistry lookup =
+        new TeamRegistry(Collections.<String>emptyList(), aliases);
+    TreeSet<String> teams = new TreeSet<String>();
+    for (int i = 0; i < names.size(); i++)
+      teams.add(lookup.resolve(names.get(i), seasons[i]));
+    return new TeamRegistry(new ArrayList<String>(teams), aliases);
+  }
+
+  /**
+   * Returns the aliases described in the given CSV file, which has a header
+   * row and then columns for the alias, team, first season, and last season.
+   */
+  public static List<Alias> loadAliases(String fileName) throws IOException {
+    List<Alias> aliases = new ArrayList<Alias>();
+    CsvParser parser = new CsvParser(fileName, true, new Object[] {
+        String.class, String.class, Integer.class, Integer.class
+    });
+    while (parser.hasNext()) {
+      String[] parts = parser.next();
+      aliases.add(new Alias(parts[0], parts[1], Integer.parseInt(parts[2]),
+          Integer.parseInt(parts[3])));
+    }
+    return aliases;
+  }
+
+  /** Returns the number of teams. */
+  public int size() { return names.size(); }
+
+  /** Returns the names of the teams in order of their indexes. */
+  public List<String> getNames() { return names; }
+
+  /** Returns the name of the team with the given index. */
+  public String getName(int index) { return names.get(index); }
+
+  /** Returns the aliases in this registry. */
+  public List<Alias> getAliases() {
+    List<Alias> all = new ArrayList<Alias>();
+    for (List<Alias> list : aliases.values())
+      all.addAll(list);
+    return all;
+  }
+
+  /**
+   * Returns the index of the given team.
+   * @throws IllegalArgumentException if the team is not in this registry
+   */
+  public int indexOf(String team) {
+    Integer index = indexes.get(team);
+    if (index == null)
+      throw new IllegalArgumentException("unknown team: " + team);
+    return index;
+  }
+
+  /** As above but resolving aliases that apply in the given season. */
+  public int indexOf(String name, int season) {
+    return indexOf(resolve(name, season));
+  }
+
+  /** Returns the team that the given name refers to in the given season. */
+  public String resolve(String name, int season) {
+    List<Alias> list = aliases.get(name);
+    if (list != null) {
+      for (Alias alias : list) {
+        if (alias.firstSeason <= season && season <= alias.lastSeason)
+          return alias.team;
+      }
+    }
+    return name;
+  }
+
+  /** Determines whether the other registry has the same teams in order. */
+  public boolean hasSameTeams(TeamRegistry other) {
+    return names.equals(other.names);
+  }
+}
@@ -0,0 +1,58 @@
+package cse417;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TeamRegistryTest {
+
+  @Test
+  public void testDefault() {
+    assertEquals(TeamModel.TEAMS.size(), TeamRegistry.DEFAULT.size());
+    assertEquals(TeamModel.indexOf("NE"), TeamRegistry.DEFAULT.indexOf("NE"));
+    assertEquals("ARI", TeamRegistry.DEFAULT.getName(0));
+  }
+
+  @Test
+  public void testFromNamesWithAliases() {
+    List<TeamRegistry.Alias> aliases = Arrays.asList(
+        new TeamRegistry.Alias("SD", "LAC", 1961, 2016),
+        new TeamRegistry.Alias("OAK", "LV", 1995, 2019));
+    TeamRegistry teams = TeamRegistry.fromNames(
+        Arrays.asList("SD", "OAK", "LAC", "SEA", "OAK"),
+        new int[] { 2016, 2016, 2017, 2017, 2020 }, aliases);
+
+    assertEquals(Arrays.asList("LAC", "LV", "OAK", "SEA"), teams.getNames());
+    assertEquals(teams.indexOf("LAC"), teams.indexOf("SD", 2016));
+    assertEquals(teams.indexOf("LV"), teams.indexOf("OAK", 2019));
+    assertEquals(teams.indexOf("OAK"), teams.indexOf("OAK", 2020));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownTeam() {
+    new TeamRegistry(Arrays.asList("A", "B"),
+        Collections.<TeamRegistry.Alias>emptyList()).indexOf("C");
+  }
+
+  @Test
+  public void testModelOfOtherTeams() {
+    TeamRegistry teams = new TeamRegistry(Arrays.asList("A", "B", "C"),
+        Collections.<TeamRegistry.Alias>emptyList());
+    List<Drive> drives = Arrays.asList(
+        new Drive(2017, 1, "A", "B", 0, 1, 0.0, 2.0),
+        new Drive(2018, 1, "C", "A", 2, 0, 0.0, -1.0));
+    TeamModel model = CoordinateDescent.findBestModel(
+        drives, 0, 1e-9, new TeamModel(teams), FitListener.NONE);
+    assertEquals(7, model.getNumParameters());
+    assertEquals(0, model.evalLoss(drives, 0), 1e-9);
+
+    DriveStore store = DriveStore.fromDrives(drives, teams);
+    assertEquals(2, store.distinctWeeks().length);
+    assertEquals(1, store.weeks(DriveStore.serialWeek(2018, 1),
+        DriveStore.serialWeek(2018, 17)).size());
+  }
+}
@@ -0,0 +1,64 @@
+package cse417;
+
+import java.io.PrintStream;
+
+
+/**
+ * Listener that prints a line for every parameter update and every sweep, as
+ * the option {@code --verbose} of {@code TeamModeler} did originally. This is
+ * useful for watching small fits but slows down large ones considerably.
+ */
+public class VerboseFitListener implements FitListener {
+
+  /** Stream to which the lines are printed. */
+  private final PrintStream out;
+
+  /** Teams of the model being fit. */
+  private volatile TeamRegistry teams = TeamRegistry.DEFAULT;
+
+  /** Creates a listener that prints to the given stream. */
+  public VerboseFitListener(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void fitStarted(String method, TeamRegistry teams, double penalty) {
+    this.teams = teams;
+  }
+
+  @Override
+  public void parameterChanged(Parameter kind, int team, double value) {
+    switch (kind) {
+      case OFFENSE:
+        out.println("Offense for " + teams.getName(team) + " is now " + value);
+        break;
+      case DEFENSE:
+        out.println("Defense for " + teams.getName(team) + " is now " + value);
+        break;
+      case CONSTANT:
+        out.println("Constant is now " + value);
+        break;
+      case FEATURE:
+        out.println("Parameter " + team + " is now " + value);
+        break;
+    }
+  }
+
+  @Override
+  public void sweepFinished(int sweep, long nanos, double change,
+      long lossEvaluations) {
+    out.println("Difference between new model and old model: " + change);
+  }
+
+  @Override
+  public void momentumRestarted(int sweep) {
+    out.println("Restarting momentum at iteration " + sweep);
+  }
+
+  @Override
+  public void penaltyTried(double penalty, int numNonZero) {
+    out.printf(
+        "Current penalty: %.5f, Current Number of Non Zero Params: %2d\n",
+        penalty, numNonZero);
+  }
+}
@@ -0,0 +1,112 @@
+package cse417;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Implements {@code LossKernel} with the JDK Vector API. The parameters of
+ * the offense and defense of several drives at once are loaded by gathers
+ * (using the index columns as the index maps), so the errors of those drives
+ * are computed in one vector. The squared errors are summed in vectors as
+ * well. Adding residuals to the sums for their teams is a scatter that may hit
+ * the same team more than once per vector, which the API cannot do in one
+ * step, so that part is left to the scalar kernel.
+ * <p>
+ * This is kept apart from the other sources because it needs the incubating
+ * module. To compile and use it:
+ * <pre>
+ *   javac -d out *.java
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp out cse417.Benchmarks
+ * </pre>
+ * {@code LossKernel.BEST} then loads it automatically.
+ */
+public final class VectorLossKernel implements LossKernel {
+
+  private static final VectorSpecies<Double> SPECIES =
+      DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public double sumOfSquaredErrors(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      int from, int to) {
+    DoubleVector sums = DoubleVector.zero(SPECIES);
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound;
+        i += SPECIES.length()) {
+      DoubleVector errors = errors(constant, offenseParams, defenseParams,
+          offenses, defenses, changes, i);
+      sums = errors.fma(errors, sums);
+    }
+    double sum = sums.reduceLanes(VectorOperators.ADD);
+
+    return sum + LossKernel.SCALAR.sumOfSquaredErrors(constant, offenseParams,
+        defenseParams, offenses, defenses, changes, i, to);
+  }
+
+  @Override
+  public double sumOfSquaredErrors(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      double[] weights, int from, int to) {
+    DoubleVector sums = DoubleVector.zero(SPECIES);
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound;
+        i += SPECIES.length()) {
+      DoubleVector errors = errors(constant, offenseParams, defenseParams,
+          offenses, defenses, changes, i);
+      sums = errors.mul(DoubleVector.fromArray(SPECIES, weights, i - from))
+          .fma(errors, sums);
+    }
+    double sum = sums.reduceLanes(VectorOperators.ADD);
+
+    for (; i < to; i++) {
+      double error = changes[i] - (constant +
+          offenseParams[offenses[i]] - defenseParams[defenses[i]]);
+      sum += weights[i - from] * error * error;
+    }
+    return sum;
+  }
+
+  /**
+   * Adds the residuals one drive at a time using {@code SCALAR}. A vector
+   * version that gathers the parameters and computes the residuals in vectors,
+   * but still has to add them to the sums one drive at a time, measured about
+   * 30% slower than the scalar loop, since the adds dominate.
+   */
+  @Override
+  public double addResiduals(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      int from, int to, double[] offenseSums, double[] defenseSums) {
+    return LossKernel.SCALAR.addResiduals(constant, offenseParams,
+        defenseParams, offenses, defenses, changes, from, to, offenseSums,
+        defenseSums);
+  }
+
+  /** As above, adding the weighted residuals using {@code SCALAR}. */
+  @Override
+  public double addResiduals(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      double[] weights, int from, int to, double[] offenseSums,
+      double[] defenseSums) {
+    return LossKernel.SCALAR.addResiduals(constant, offenseParams,
+        defenseParams, offenses, defenses, changes, weights, from, to,
+        offenseSums, defenseSums);
+  }
+
+  /**
+   * Returns the errors (change minus prediction) of the drives starting at
+   * index {@code i}, one per lane.
+   */
+  private static DoubleVector errors(double constant, double[] offenseParams,
+      double[] defenseParams, int[] offenses, int[] defenses, double[] changes,
+      int i) {
+    DoubleVector offense =
+        DoubleVector.fromArray(SPECIES, offenseParams, 0, offenses, i);
+    DoubleVector defense =
+        DoubleVector.fromArray(SPECIES, defenseParams, 0, defenses, i);
+    return DoubleVector.fromArray(SPECIES, changes, i)
+        .sub(offense).add(defense).sub(constant);
+  }
+}
@@ -6,7 +6,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 /** Suite that includes all the tests for this homework assignment. */
 @RunWith(Suite.class)
-@SuiteClasses({ ArgParserTest.class, CsvParserTest.class })
+@SuiteClasses({ ArgParserTest.class, CsvParserTest.class,
+    RangeIndexTest.class, SidewaysTrendTest.class })
 public final class AllTests {
   // nothing needed here
 }
@@ -0,0 +1,174 @@
+package cse417;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Finds the longest sideways trend in each of many price files. The files are
+ * scanned in parallel on a pool with a fixed number of threads, each of which
+ * loads one file at a time into a {@code PriceSeries} and scans it in linear
+ * time, keeping only the result. So memory use is bounded by the largest
+ * files, however many there are. The results are ranked by the length of the
+ * trend, longest first.
+ */
+public class BatchScan {
+
+  /** Longest sideways trend found in one file. */
+  public static final class Result {
+
+    /** Name of the file. */
+    public final String fileName;
+
+    /** Number of prices in the file. */
+    public final int numPrices;
+
+    /** Longest trend, or null if the file could not be scanned. */
+    public final Range longest;
+
+    /** Dates of the first and last prices of the trend. */
+    public final String firstDate;
+    public final String lastDate;
+
+    /** Reason the file could not be scanned, or null if it was. */
+    public final String error;
+
+    Result(String fileName, int numPrices, Range longest, String firstDate,
+        String lastDate, String error) {
+      this.fileName = fileName;
+      this.numPrices = numPrices;
+      this.longest = longest;
+      this.firstDate = firstDate;
+      this.lastDate = lastDate;
+      this.error = error;
+    }
+  }
+
+  /** Results for the files scanned successfully, ranked. */
+  private final List<Result> results = new ArrayList<>();
+
+  /** Results for the files that could not be scanned. */
+  private final List<Result> failures = new ArrayList<>();
+
+  /** Total number of prices scanned. */
+  private long numPrices;
+
+  /** Nanoseconds taken to scan all of the files. */
+  private final long nanos;
+
+  /**
+   * Scans each of the given files for its longest sideways trend with the
+   * given maximum percent change, on a pool of {@code threads} threads, which
+   * must be positive.
+   */
+  public BatchScan(List<String> fileNames, double maxPctChange, int threads) {
+    assert threads > 0;
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+      for (String fileName : fileNames)
+        tasks.add(pool.submit(() -> scan(fileName, maxPctChange)));
+      for (ForkJoinTask<Result> task : tasks) {
+        Result result = task.join();
+        if (result.error == null) {
+          results.add(result);
+          numPrices += result.numPrices;
+        } else {
+          failures.add(result);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    nanos = System.nanoTime() - start;
+
+    // Longest first, with ties in order of file name.
+    Collections.sort(results, (a, b) -> {
+      int byLength = Integer.compare(b.longest.length(), a.longest.length());
+      return (byLength != 0) ? byLength : a.fileName.compareTo(b.fileName);
+    });
+  }
+
+  /** Returns the longest sideways trend in the given file. */
+  private static Result scan(String fileName, double maxPctChange) {
+    try {
+      PriceSeries series = PriceSeries.load(fileName);
+      if (series.size() == 0)
+        return new Result(fileName, 0, null, null, null, "no prices");
+      Range longest = SidewaysTrend.findLongestSidewaysTrendLinear(
+          maxPctChange, series.getPrices());
+      return new Result(fileName, series.size(), longest,
+          series.formatDate(longest.firstIndex),
+          series.formatDate(longest.lastIndex), null);
+    } catch (IOException | RuntimeException ex) {
+      // Some exceptions have no message, but a failure must have an error.
+      String error =
+          (ex.getMessage() != null) ? ex.getMessage() : ex.toString();
+      return new Result(fileName, 0, null, null, null, error);
+    }
+  }
+
+  /**
+   * Returns the files to scan given the name of either a directory, in which
+   * case these are the ".csv" files in it, or a manifest file, in which case
+   * these are the files named on its lines (relative to the directory of the
+   * manifest), skipping blank lines and those starting with "#".
+   */
+  public static List<String> findFiles(String name) throws IOException {
+    File path = new File(name);
+    List<String> fileNames = new ArrayList<>();
+    if (path.isDirectory()) {
+      String[] names = path.list((dir, file) -> file.endsWith(".csv"));
+      Arrays.sort(names);
+      for (String file : names)
+        fileNames.add(new File(path, file).getPath());
+    } else {
+      try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+        String line;
+        while ((line = in.readLine()) != null) {
+          line = line.trim();
+          if (line.isEmpty() || line.startsWith("#"))
+            continue;
+          File file = new File(line);
+          if (!file.isAbsolute())
+            file = new File(path.getAbsoluteFile().getParentFile(), line);
+          fileNames.add(file.getPath());
+        }
+      }
+    }
+    return fileNames;
+  }
+
+  /** Returns the results for the files scanned, longest trend first. */
+  public List<Result> getResults() { return results; }
+
+  /** Returns the results for the files that could not be scanned. */
+  public List<Result> getFailures() { return failures; }
+
+  /** Returns the total number of prices in the files scanned. */
+  public long getNumPrices() { return numPrices; }
+
+  /** Returns the number of nanoseconds taken by the scan. */
+  public long getNanos() { return nanos; }
+
+  /** Prints the ranked results as a CSV table to the given stream. */
+  public void printTo(PrintStream out) {
+    out.println("rank,file," + Range.CSV_COLUMNS);
+    for (int r = 0; r < results.size(); r++) {
+      Result result = results.get(r);
+      out.printf("%d,%s,%s\n", r + 1, result.fileName,
+          result.longest.toCsv(result.firstDate, result.lastDate));
+    }
+  }
+}
@@ -158,7 +158,7 @@ public class CsvParser implements Iterator<String[]> {
   }
 
   /** Returns the columns in the given row. */
-  private static String[] parseRow(String row) {
+  static String[] parseRow(String row) {
     List<String> cols = new ArrayList<String>();
     int index = 0;
 
@@ -0,0 +1,82 @@
+package cse417;
+
+
+/**
+ * Maintains the low and high price in a window of consecutive prices that
+ * only moves forward through an array: prices are added at the end and removed
+ * from the start. Each is kept in a monotonic deque of indexes: the low deque
+ * holds the indexes whose price is smaller than every later price in the
+ * window, so its front is the low, and likewise for the high. Each index is
+ * pushed and popped at most once, so moving the window across all {@code n}
+ * prices takes O(n) time in total, and nothing is allocated after creation.
+ */
+public class MinMaxWindow {
+
+  /** Prices over which the window moves. */
+  private final int[] prices;
+
+  /**
+   * Indexes in the low and high deques, from {@code head} (inclusive) to
+   * {@code tail} (exclusive). Each index is pushed at most once, so the tails
+   * never pass the end of the arrays.
+   */
+  private final int[] lows;
+  private final int[] highs;
+  private int lowHead, lowTail;
+  private int highHead, highTail;
+
+  /** The window contains the prices from {@code first} to {@code end - 1}. */
+  private int first;
+  private int end;
+
+  /** Creates an empty window at the start of the given prices. */
+  public MinMaxWindow(int[] prices) {
+    this.prices = prices;
+    this.lows = new int[prices.length];
+    this.highs = new int[prices.length];
+  }
+
+  /** Returns the index of the first price in the window. */
+  public int getFirstIndex() { return first; }
+
+  /** Returns the index after the last price in the window. */
+  public int getEndIndex() { return end; }
+
+  /** Returns the number of prices in the window. */
+  public int size() { return end - first; }
+
+  /** Returns the lowest price in the window, which must not be empty. */
+  public int getLowPrice() {
+    assert first < end;
+    return prices[lows[lowHead]];
+  }
+
+  /** Returns the highest price in the window, which must not be empty. */
+  public int getHighPrice() {
+    assert first < end;
+    return prices[highs[highHead]];
+  }
+
+  /** Adds the next price after the window to its end. */
+  public void extend() {
+    assert end < prices.length;
+    int price = prices[end];
+    while (lowTail > lowHead && prices[lows[lowTail - 1]] >= price)
+      lowTail--;
+    lows[lowTail++] = end;
+    while (highTail > highHead && prices[highs[highTail - 1]] <= price)
+      highTail--;
+    highs[highTail++] = end;
+    end++;
+  }
+
+  /** Removes the first price of the window, which must not be empty. */
+  public void shrink() {
+    assert first < end;
+    if (lows[lowHead] == first)
+      lowHead++;
+    if (highs[highHead] == first)
+      highHead++;
+    first++;
+  }
+}
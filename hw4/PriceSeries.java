@@ -0,0 +1,158 @@
+package cse417;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Closing prices of one security in increasing order of date, stored in
+ * primitive arrays. Prices are in units of cents ($0.01), as in
+ * {@code SidewaysTrend}, and dates are in milliseconds since the epoch.
+ * <p>
+ * The method {@code load} parses a file one line at a time straight into the
+ * arrays, without creating an object per row, and can be called from several
+ * threads at once (unlike a shared {@code DateFormat}).
+ */
+public class PriceSeries {
+
+  /** Format for the dates used in the data files, one per thread. */
+  private static final ThreadLocal<DateFormat> DATE_FORMAT =
+      ThreadLocal.withInitial(() -> new SimpleDateFormat("dd-MMM-yy"));
+
+  /**
+   * Dates already parsed by each thread. Parsing is most of the cost of
+   * loading a file, and files of different securities mostly have the same
+   * trading days, so after the first file most dates are found here.
+   */
+  private static final ThreadLocal<Map<String, Long>> PARSED_DATES =
+      ThreadLocal.withInitial(HashMap::new);
+
+  /** Most dates kept in {@code PARSED_DATES} before it is cleared. */
+  private static final int MAX_PARSED_DATES = 1 << 16;
+
+  /** Name of the file from which the prices were read. */
+  private final String name;
+
+  /** Date of each price. */
+  private final long[] dates;
+
+  /** Price on each date. */
+  private final int[] prices;
+
+  /** Creates a series with the given dates and prices. */
+  public PriceSeries(String name, long[] dates, int[] prices) {
+    assert dates.length == prices.length;
+    this.name = name;
+    this.dates = dates;
+    this.prices = prices;
+  }
+
+  /**
+   * Returns the prices in the given CSV file, which has a header row and then
+   * rows whose first two columns are the date and closing price, in either
+   * increasing or decreasing order of date (or, more slowly, any order, in
+   * which case rows with the same date keep their order in the file).
+   */
+  public static PriceSeries load(String fileName) throws IOException {
+    long[] dates = new long[1024];
+    int[] prices = new int[1024];
+    int n = 0;
+    DateFormat format = DATE_FORMAT.get();
+    Map<String, Long> parsedDates = PARSED_DATES.get();
+    try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+      in.readLine();  // header
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isEmpty())
+          continue;
+        String[] parts = CsvParser.parseRow(line);
+        if (parts.length < 2) {
+          throw new IOException(
+              fileName + ": expected a date and price: " + line);
+        }
+        if (n == dates.length) {
+          dates = Arrays.copyOf(dates, 2 * n);
+          prices = Arrays.copyOf(prices, 2 * n);
+        }
+        try {
+          Long date = parsedDates.get(parts[0]);
+          if (date == null) {
+            if (parsedDates.size() == MAX_PARSED_DATES)
+              parsedDates.clear();
+            date = format.parse(parts[0]).getTime();
+            parsedDates.put(parts[0], date);
+          }
+          dates[n] = date;
+          prices[n] = (int) (100 * Double.parseDouble(parts[1]));
+        } catch (ParseException | NumberFormatException ex) {
+          throw new IOException(fileName + ": bad date or price: " + line);
+        }
+        n++;
+      }
+    }
+    return sortedByDate(fileName, Arrays.copyOf(dates, n),
+        Arrays.copyOf(prices, n));
+  }
+
+  /** Returns the series with the given prices put in order of date. */
+  private static PriceSeries sortedByDate(String name, long[] dates,
+      int[] prices) {
+    int n = dates.length;
+    boolean increasing = true, decreasing = true;
+    for (int i = 1; i < n; i++) {
+      increasing &= dates[i - 1] <= dates[i];
+      decreasing &= dates[i - 1] > dates[i];
+    }
+
+    if (!increasing && decreasing) {
+      for (int i = 0, j = n - 1; i < j; i++, j--) {
+        long date = dates[i];
+        dates[i] = dates[j];
+        dates[j] = date;
+        int price = prices[i];
+        prices[i] = prices[j];
+        prices[j] = price;
+      }
+    } else if (!increasing) {
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++)
+        order[i] = i;
+      Arrays.sort(order, (a, b) -> Long.compare(dates[a], dates[b]));
+      long[] sortedDates = new long[n];
+      int[] sortedPrices = new int[n];
+      for (int i = 0; i < n; i++) {
+        sortedDates[i] = dates[order[i]];
+        sortedPrices[i] = prices[order[i]];
+      }
+      return new PriceSeries(name, sortedDates, sortedPrices);
+    }
+    return new PriceSeries(name, dates, prices);
+  }
+
+  /** Returns the name of the file from which the prices were read. */
+  public String getName() { return name; }
+
+  /** Returns the number of prices. */
+  public int size() { return prices.length; }
+
+  /** Returns the prices in order of date. (The array is not copied.) */
+  public int[] getPrices() { return prices; }
+
+  /** Returns the date of the i-th price. */
+  public Date getDate(int i) { return new Date(dates[i]); }
+
+  /** Returns the date of the i-th price in the format of the data files. */
+  public String formatDate(int i) {
+    return DATE_FORMAT.get().format(getDate(i));
+  }
+}
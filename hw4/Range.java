@@ -6,11 +6,21 @@ import java.util.List;
 /** Records information about a range / subsequence in the price data. */
 public class Range {
 
+  /** Names of the columns written by {@code toCsv}. */
+  public static final String CSV_COLUMNS =
+      "days,first,last,low,high,pct_change";
+
   /** Returns a range consisting of the given index only. */
   public static Range fromOneIndex(int index, List<Integer> prices) {
     return new Range(index, prices.get(index));
   }
 
+  /** Returns the range with the given indexes and low and high prices. */
+  public static Range fromBounds(int firstIndex, int lastIndex, int lowPrice,
+      int highPrice) {
+    return new Range(firstIndex, lastIndex, lowPrice, highPrice);
+  }
+
   public final int firstIndex;
   public final int lastIndex;
   public final int lowPrice;
@@ -46,11 +56,32 @@ public class Range {
   /** Returns the length of the range. */
   public int length() { return lastIndex + 1 - firstIndex; }
 
+  /** Returns the percent change from the low price to the high price. */
+  public double percentChange() {
+    return 100. * (highPrice - lowPrice) / lowPrice;
+  }
+
+  /**
+   * Returns the length, the given dates of the first and last prices, and the
+   * low and high prices (in dollars) and percent change of this range, as
+   * columns of a CSV row.
+   */
+  public String toCsv(String firstDate, String lastDate) {
+    return String.format("%d,%s,%s,%.2f,%.2f,%.1f", length(), firstDate,
+        lastDate, lowPrice / 100., highPrice / 100., percentChange());
+  }
+
   /**
    * Determines whether the percent change between the low and high price is
    * less than or equal to the given amount.
    */
   public boolean percentChangeAtMost(double pctChanged) {
+    return percentChangeAtMost(lowPrice, highPrice, pctChanged);
+  }
+
+  /** As above but for the given low and high prices. */
+  public static boolean percentChangeAtMost(int lowPrice, int highPrice,
+      double pctChanged) {
     // highPrice / lowPrice <= 1 + pctChanged/100
     return highPrice <= lowPrice * (1 + pctChanged/100);
   }
@@ -0,0 +1,38 @@
+package cse417;
+
+
+/**
+ * Answers queries about the low and high prices in any range of consecutive
+ * prices in a series, after building an index of them, without rescanning the
+ * range or creating a {@code Range} per price. Ranges are given by the indexes
+ * of their first and last prices (inclusive), as in {@code Range}.
+ * <p>
+ * {@code SparseTable} answers each query in O(1) time for prices that do not
+ * change, while {@code SegmentTree} takes O(log n) time but allows prices to
+ * be appended or changed.
+ */
+public interface RangeIndex {
+
+  /** Returns the number of prices indexed. */
+  int size();
+
+  /** Returns the lowest price from index i to index j (inclusive). */
+  int min(int i, int j);
+
+  /** Returns the highest price from index i to index j (inclusive). */
+  int max(int i, int j);
+
+  /**
+   * Determines whether the percent change between the low and high prices
+   * from index i to index j is at most the given amount, i.e., whether those
+   * prices are a sideways trend.
+   */
+  default boolean percentChangeAtMost(int i, int j, double pctChanged) {
+    return Range.percentChangeAtMost(min(i, j), max(i, j), pctChanged);
+  }
+
+  /** Returns the range from index i to index j with its low and high. */
+  default Range range(int i, int j) {
+    return Range.fromBounds(i, j, min(i, j), max(i, j));
+  }
+}
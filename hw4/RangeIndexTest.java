@@ -0,0 +1,66 @@
+package cse417;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class RangeIndexTest {
+
+  /** Checks the index against a scan of every range of the prices. */
+  private static void assertMatchesScan(int[] prices, RangeIndex index) {
+    assertEquals(prices.length, index.size());
+    for (int i = 0; i < prices.length; i++) {
+      int low = prices[i], high = prices[i];
+      for (int j = i; j < prices.length; j++) {
+        low = Math.min(low, prices[j]);
+        high = Math.max(high, prices[j]);
+        assertEquals(low, index.min(i, j));
+        assertEquals(high, index.max(i, j));
+        assertEquals(Range.percentChangeAtMost(low, high, 3),
+            index.percentChangeAtMost(i, j, 3));
+      }
+    }
+  }
+
+  @Test
+  public void testSparseTable() {
+    for (int n = 1; n <= 70; n += 3) {
+      int[] prices = SidewaysTrendTest.makePrices(n, n);
+      assertMatchesScan(prices, new SparseTable(prices));
+    }
+
+    Range range = new SparseTable(new int[] {5, 3, 8, 4}).range(1, 3);
+    assertEquals(1, range.firstIndex);
+    assertEquals(3, range.lastIndex);
+    assertEquals(3, range.lowPrice);
+    assertEquals(8, range.highPrice);
+  }
+
+  @Test
+  public void testSegmentTree() {
+    for (int n = 1; n <= 70; n += 3) {
+      int[] prices = SidewaysTrendTest.makePrices(n, n);
+      assertMatchesScan(prices, new SegmentTree(prices));
+    }
+
+    int[] prices = SidewaysTrendTest.makePrices(100, 7);
+    SegmentTree tree = new SegmentTree();
+    assertEquals(0, tree.size());
+    for (int n = 0; n < prices.length; n++) {
+      tree.append(prices[n]);
+      if (n % 9 == 0)
+        assertMatchesScan(Arrays.copyOf(prices, n + 1), tree);
+    }
+
+    Random rand = new Random(3);
+    for (int k = 0; k < 20; k++) {
+      int i = rand.nextInt(prices.length);
+      prices[i] = 100 + rand.nextInt(20000);
+      tree.set(i, prices[i]);
+    }
+    assertMatchesScan(prices, tree);
+  }
+}
@@ -0,0 +1,118 @@
+package cse417;
+
+import java.util.Arrays;
+
+
+/**
+ * Index of the low and high prices in every range of a series that can grow
+ * or change, answering each query in O(log n) time. It is a complete binary
+ * tree stored in arrays, where node 1 is the root, the children of node v are
+ * {@code 2v} and {@code 2v + 1}, and the leaves, starting at node
+ * {@code capacity}, are the prices. Each internal node holds the low and high
+ * of the leaves below it. When the leaves are full, the capacity doubles and
+ * the tree is rebuilt, so appending takes O(log n) amortized time.
+ */
+public class SegmentTree implements RangeIndex {
+
+  /** Number of leaves, a power of two. */
+  private int capacity;
+
+  /** Number of prices appended so far. */
+  private int size;
+
+  /** Low and high below each node (unused leaves are empty ranges). */
+  private int[] lows;
+  private int[] highs;
+
+  /** Creates an empty index. */
+  public SegmentTree() {
+    this(new int[0]);
+  }
+
+  /** Creates an index containing the given prices. */
+  public SegmentTree(int[] prices) {
+    capacity = 1;
+    while (capacity < prices.length)
+      capacity *= 2;
+    lows = new int[2 * capacity];
+    highs = new int[2 * capacity];
+    Arrays.fill(lows, Integer.MAX_VALUE);
+    Arrays.fill(highs, Integer.MIN_VALUE);
+    System.arraycopy(prices, 0, lows, capacity, prices.length);
+    System.arraycopy(prices, 0, highs, capacity, prices.length);
+    size = prices.length;
+    for (int v = capacity - 1; v >= 1; v--) {
+      lows[v] = Math.min(lows[2 * v], lows[2 * v + 1]);
+      highs[v] = Math.max(highs[2 * v], highs[2 * v + 1]);
+    }
+  }
+
+  @Override
+  public int size() { return size; }
+
+  /** Adds the given price after the last one. */
+  public void append(int price) {
+    if (size == capacity) {
+      int[] prices = Arrays.copyOfRange(lows, capacity, capacity + size);
+      SegmentTree bigger = new SegmentTree(Arrays.copyOf(prices, 2 * size));
+      capacity = bigger.capacity;
+      lows = bigger.lows;
+      highs = bigger.highs;
+      for (int i = size; i < capacity; i++)
+        clear(i);
+    }
+    size++;
+    set(size - 1, price);
+  }
+
+  /** Changes the price at the given index. */
+  public void set(int i, int price) {
+    assert 0 <= i && i < size;
+    int v = capacity + i;
+    lows[v] = highs[v] = price;
+    for (v /= 2; v >= 1; v /= 2) {
+      lows[v] = Math.min(lows[2 * v], lows[2 * v + 1]);
+      highs[v] = Math.max(highs[2 * v], highs[2 * v + 1]);
+    }
+  }
+
+  /** Makes the leaf at the given index empty. */
+  private void clear(int i) {
+    int v = capacity + i;
+    lows[v] = Integer.MAX_VALUE;
+    highs[v] = Integer.MIN_VALUE;
+    for (v /= 2; v >= 1; v /= 2) {
+      lows[v] = Math.min(lows[2 * v], lows[2 * v + 1]);
+      highs[v] = Math.max(highs[2 * v], highs[2 * v + 1]);
+    }
+  }
+
+  @Override
+  public int min(int i, int j) {
+    assert 0 <= i && i <= j && j < size;
+    int low = Integer.MAX_VALUE;
+    // Inv: low is the min of the leaves left of lo and right of hi (in range)
+    for (int lo = capacity + i, hi = capacity + j + 1; lo < hi;
+         lo /= 2, hi /= 2) {
+      if ((lo & 1) == 1)
+        low = Math.min(low, lows[lo++]);
+      if ((hi & 1) == 1)
+        low = Math.min(low, lows[--hi]);
+    }
+    return low;
+  }
+
+  @Override
+  public int max(int i, int j) {
+    assert 0 <= i && i <= j && j < size;
+    int high = Integer.MIN_VALUE;
+    for (int lo = capacity + i, hi = capacity + j + 1; lo < hi;
+         lo /= 2, hi /= 2) {
+      if ((lo & 1) == 1)
+        high = Math.max(high, highs[lo++]);
+      if ((hi & 1) == 1)
+        high = Math.max(high, highs[--hi]);
+    }
+    return high;
+  }
+}
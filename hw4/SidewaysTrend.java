@@ -1,16 +1,9 @@
 package cse417;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -19,15 +12,38 @@ import java.util.List;
  * {@code --max-pct-change} controls how far apart the high and low (closing)
  * prices can be, in percentage terms, during a period for it to be consider a
  * sideways trend. This defaults to 5%.
+ * <p>
+ * The option {@code --linear} finds the trend with a single pass of two
+ * fingers over an array of the prices, keeping the low and high of the prices
+ * between them in a {@code MinMaxWindow}. This takes O(n) time and allocates
+ * nothing per price, rather than the O(n log n) time and the {@code Range}
+ * per price per level of the divide and conquer.
+ * <p>
+ * By default, the divide and conquer looks up the low and high of each range
+ * it considers in a {@code SparseTable} built once over the prices, rather
+ * than combining {@code Range}s for each price at each level.
+ * <p>
+ * The option {@code --batch} instead scans many files, given by the name of a
+ * directory of CSV files or of a manifest listing one file per line, using the
+ * linear method on {@code --threads} threads (by default, one per processor).
+ * It prints a CSV table of the longest trend in each file, ranked from longest
+ * to shortest, and reports the files that could not be read and the number of
+ * files and prices scanned per second on standard error.
+ * <p>
+ * The option {@code --profile} takes a comma-separated list of maximum percent
+ * changes (e.g., "1,2,5,10") in place of {@code --max-pct-change} and prints
+ * a CSV table of the longest sideways trend for each of them. The file is
+ * parsed and indexed once, and the thresholds are swept in increasing order,
+ * starting each from the length of the trend found for the one before.
+ * <p>
+ * The options {@code --min-days} and {@code --top} instead print a CSV table
+ * of many sideways trends that do not overlap, longest first: those with at
+ * least {@code --min-days} prices (default 1), up to {@code --top} of them
+ * (default all). Each trend is maximal, i.e., it is not part of any longer
+ * one, and each is the longest that does not overlap those before it.
  */
 public class SidewaysTrend {
 
-    /**
-     * Format for the dates used in the data files.
-     */
-    private static final DateFormat DATE_FORMAT =
-            new SimpleDateFormat("dd-MMM-yy");
-
     /**
      * Entry point for a program to build a model of NFL teams.
      */
@@ -35,80 +51,152 @@ public class SidewaysTrend {
         ArgParser argParser = new ArgParser("SidewaysTrend");
         argParser.addOption("max-pct-change", Double.class);
         argParser.addOption("naive", Boolean.class);
+        argParser.addOption("linear", Boolean.class);
+        argParser.addOption("batch", Boolean.class);
+        argParser.addOption("threads", Integer.class);
+        argParser.addOption("profile", String.class);
+        argParser.addOption("min-days", Integer.class);
+        argParser.addOption("top", Integer.class);
         args = argParser.parseArgs(args, 1, 1);
 
         double maxPctChange = argParser.hasOption("max-pct-change") ?
                 argParser.getDoubleOption("max-pct-change") : 5.0;
+        if (!(maxPctChange >= 0)) {
+            System.err.println("--max-pct-change must be non-negative");
+            System.exit(1);
+        }
 
-        List<Date> dates = new ArrayList<Date>();
-        List<Integer> prices = loadPrices(args[0], dates);
+        if (argParser.hasOption("batch")) {
+            int threads = argParser.hasOption("threads") ?
+                    argParser.getIntegerOption("threads") :
+                    Runtime.getRuntime().availableProcessors();
+            if (threads <= 0) {
+                System.err.println("--threads must be positive");
+                System.exit(1);
+            }
+            scanBatch(args[0], maxPctChange, threads);
+            return;
+        }
+
+        if (argParser.hasOption("profile")) {
+            printProfile(args[0], argParser.getStringOption("profile"));
+            return;
+        }
+
+        if (argParser.hasOption("min-days") || argParser.hasOption("top")) {
+            printTrends(args[0], maxPctChange,
+                    argParser.hasOption("min-days") ?
+                            argParser.getIntegerOption("min-days") : 1,
+                    argParser.hasOption("top") ?
+                            argParser.getIntegerOption("top") : Integer.MAX_VALUE);
+            return;
+        }
+
+        PriceSeries series = PriceSeries.load(args[0]);
+        if (series.size() == 0) {
+            System.err.println("No prices in " + args[0]);
+            System.exit(1);
+        }
+        int[] prices = series.getPrices();
 
         Range longest;
         if (argParser.hasOption("naive")) {
-            longest = findLongestSidewaysTrendNaive(maxPctChange, prices);
+            longest = findLongestSidewaysTrendNaive(
+                    maxPctChange, toList(prices));
+        } else if (argParser.hasOption("linear")) {
+            longest = findLongestSidewaysTrendLinear(maxPctChange, prices);
         } else {
             longest = findLongestSidewaysTrend(
-                    maxPctChange, prices, 0, prices.size() - 1);
+                    maxPctChange, new SparseTable(prices));
         }
 
         System.out.printf(
                 "Longest sideways trend is from %s to %s (%d trading days)\n",
-                DATE_FORMAT.format(dates.get(longest.firstIndex)),
-                DATE_FORMAT.format(dates.get(longest.lastIndex)),
+                series.formatDate(longest.firstIndex),
+                series.formatDate(longest.lastIndex),
                 longest.length());
         System.out.printf("Price range is %.2f to %.2f, a %.1f%% change\n",
                 longest.lowPrice / 100., longest.highPrice / 100.,
-                100. * (longest.highPrice - longest.lowPrice) / longest.lowPrice);
+                longest.percentChange());
     }
 
     /**
-     * Returns the prices in the file. Prices are returned in units of cents
-     * ($0.01) to avoid roundoff issues elsewhere in the code.
-     *
-     * @param fileName Name of the CSV file containing price data
-     * @param dates    If non-null, dates will be stored in this list. In this case,
-     *                 we will also check that the prices are in order of increasing date.
+     * Prints the ranked longest sideways trends in the files named by the given
+     * directory or manifest, as described for {@code --batch} above.
      */
-    private static List<Integer> loadPrices(String fileName, List<Date> dates)
-            throws IOException, ParseException {
-        assert (dates == null) || (dates.size() == 0);
-
-        // Stores the relevant information from one row of data.
-        class Row {
-            public final Date date;
-            public final int price;
-
-            public Row(Date date, int price) {
-                this.date = date;
-                this.price = price;
-            }
+    private static void scanBatch(String name, double maxPctChange, int threads)
+            throws IOException {
+        List<String> fileNames = BatchScan.findFiles(name);
+        BatchScan scan = new BatchScan(fileNames, maxPctChange, threads);
+        scan.printTo(System.out);
+
+        for (BatchScan.Result failure : scan.getFailures()) {
+            System.err.printf("Could not scan %s: %s\n",
+                    failure.fileName, failure.error);
         }
-        List<Row> rows = new ArrayList<Row>();
+        double seconds = scan.getNanos() / 1e9;
+        int numFiles = scan.getResults().size() + scan.getFailures().size();
+        System.err.printf("Scanned %d files (%d prices) in %.2f s: " +
+                "%.1f files/sec, %.0f rows/sec\n",
+                numFiles, scan.getNumPrices(), seconds, numFiles / seconds,
+                scan.getNumPrices() / seconds);
+    }
 
-        CsvParser parser = new CsvParser(fileName, true, new Object[]{
-                DATE_FORMAT, Float.class, Float.class, Float.class, Float.class,
-                String.class, String.class
-        });
-        while (parser.hasNext()) {
-            String[] parts = parser.next();
-            double close = Double.parseDouble(parts[1]);
-            rows.add(new Row(DATE_FORMAT.parse(parts[0]), (int) (100 * close)));
+    /**
+     * Prints the longest sideways trend in the given file for each of the
+     * maximum percent changes in the given comma-separated list, as described
+     * for {@code --profile} above.
+     */
+    private static void printProfile(String fileName, String pctList)
+            throws IOException {
+        String[] parts = pctList.split(",");
+        double[] maxPctChanges = new double[parts.length];
+        for (int k = 0; k < parts.length; k++) {
+            try {
+                maxPctChanges[k] = Double.parseDouble(parts[k].trim());
+            } catch (NumberFormatException ex) {
+                maxPctChanges[k] = -1;
+            }
+            if (!(maxPctChanges[k] >= 0)) {
+                System.err.println("Bad percent change: " + parts[k]);
+                System.exit(1);
+            }
         }
 
-        // Put the rows in increasing order of date.
-        Collections.sort(rows, (r1, r2) -> r1.date.compareTo(r2.date));
-
-        // If requested, otput the dates from the file.
-        if (dates != null) {
-            for (Row row : rows)
-                dates.add(row.date);
+        PriceSeries series = PriceSeries.load(fileName);
+        if (series.size() == 0) {
+            System.err.println("No prices in " + fileName);
+            System.exit(1);
+        }
+        Range[] longest = findLongestSidewaysTrends(
+                maxPctChanges, new SparseTable(series.getPrices()));
+
+        System.out.println("max_pct_change," + Range.CSV_COLUMNS);
+        for (int k = 0; k < longest.length; k++) {
+            Range r = longest[k];
+            System.out.printf("%s,%s\n", parts[k].trim(), r.toCsv(
+                    series.formatDate(r.firstIndex),
+                    series.formatDate(r.lastIndex)));
         }
+    }
 
-        // Return the prices from the file.
-        List<Integer> prices = new ArrayList<Integer>();
-        for (Row row : rows)
-            prices.add(row.price);
-        return prices;
+    /**
+     * Prints the non-overlapping sideways trends in the given file, as
+     * described for {@code --min-days} and {@code --top} above.
+     */
+    private static void printTrends(String fileName, double maxPctChange,
+            int minLength, int maxCount) throws IOException {
+        PriceSeries series = PriceSeries.load(fileName);
+        List<Range> trends = findSidewaysTrends(
+                maxPctChange, series.getPrices(), minLength, maxCount);
+
+        System.out.println("rank," + Range.CSV_COLUMNS);
+        for (int k = 0; k < trends.size(); k++) {
+            Range r = trends.get(k);
+            System.out.printf("%d,%s\n", k + 1, r.toCsv(
+                    series.formatDate(r.firstIndex),
+                    series.formatDate(r.lastIndex)));
+        }
     }
 
     /**
@@ -134,24 +222,206 @@ public class SidewaysTrend {
         return longest;
     }
 
+    /**
+     * Returns the prices in the array as a list.
+     */
+    private static List<Integer> toList(int[] prices) {
+        List<Integer> list = new ArrayList<Integer>(prices.length);
+        for (int price : prices)
+            list.add(price);
+        return list;
+    }
+
+    /**
+     * Returns the range with the longest sideways trend in the price data. For
+     * each last index in turn, the first index is moved forward until the
+     * prices between them form a sideways trend. Since every part of a
+     * sideways trend is also one, the first index never needs to move back.
+     * Ties go to the earliest range, as in the naive method.
+     */
+    static Range findLongestSidewaysTrendLinear(
+            double maxPctChange, int[] prices) {
+        assert prices.length > 0;
+
+        MinMaxWindow window = new MinMaxWindow(prices);
+        int bestFirst = 0;
+        int bestLength = 0;
+        int bestLow = 0;
+        int bestHigh = 0;
+        for (int last = 0; last < prices.length; last++) {
+            window.extend();
+            // A single price is a trend even if maxPctChange is negative.
+            while (window.size() > 1 &&
+                    !Range.percentChangeAtMost(window.getLowPrice(),
+                            window.getHighPrice(), maxPctChange)) {
+                window.shrink();
+            }
+            if (window.size() > bestLength) {
+                bestFirst = window.getFirstIndex();
+                bestLength = window.size();
+                bestLow = window.getLowPrice();
+                bestHigh = window.getHighPrice();
+            }
+        }
+        return Range.fromBounds(
+                bestFirst, bestFirst + bestLength - 1, bestLow, bestHigh);
+    }
+
+    /**
+     * Returns sideways trends in the price data that do not overlap, in
+     * decreasing order of length (ties in order of index), stopping at those
+     * with fewer than {@code minLength} prices or after {@code maxCount} of
+     * them. Each is a maximal trend, one that cannot be extended at either
+     * end, and is the longest maximal trend not overlapping those before it.
+     * <p>
+     * The maximal trends are found with one pass of the linear method: the
+     * range from the first finger to the last index is maximal whenever the
+     * next price would force the first finger forward. There are at most n
+     * of them, and they are sorted by length with a counting sort. A trend
+     * overlapping one already chosen, which is at least as long, must contain
+     * one of its ends, so the prices in chosen trends are marked, and each
+     * check takes O(1) time. In all, this takes O(n) time.
+     */
+    static List<Range> findSidewaysTrends(double maxPctChange, int[] prices,
+                                          int minLength, int maxCount) {
+        int n = prices.length;
+        int[] firsts = new int[n];
+        int[] lasts = new int[n];
+        int[] lows = new int[n];
+        int[] highs = new int[n];
+        int numMaximal = 0;
+
+        MinMaxWindow window = new MinMaxWindow(prices);
+        for (int last = 0; last < n; last++) {
+            int low = (last > 0) ? window.getLowPrice() : 0;
+            int high = (last > 0) ? window.getHighPrice() : 0;
+            window.extend();
+            // A single price is a trend even if maxPctChange is negative.
+            if (window.size() > 1 &&
+                    !Range.percentChangeAtMost(window.getLowPrice(),
+                            window.getHighPrice(), maxPctChange)) {
+                // The range ending at the previous price cannot be extended.
+                firsts[numMaximal] = window.getFirstIndex();
+                lasts[numMaximal] = last - 1;
+                lows[numMaximal] = low;
+                highs[numMaximal] = high;
+                numMaximal++;
+                do {
+                    window.shrink();
+                } while (window.size() > 1 &&
+                        !Range.percentChangeAtMost(window.getLowPrice(),
+                                window.getHighPrice(), maxPctChange));
+            }
+        }
+        if (n > 0) {
+            firsts[numMaximal] = window.getFirstIndex();
+            lasts[numMaximal] = n - 1;
+            lows[numMaximal] = window.getLowPrice();
+            highs[numMaximal] = window.getHighPrice();
+            numMaximal++;
+        }
+
+        // Sort the maximal trends by decreasing length, keeping ties in order.
+        int[] starts = new int[n + 2];
+        for (int m = 0; m < numMaximal; m++)
+            starts[n - (lasts[m] + 1 - firsts[m]) + 1]++;
+        for (int key = 1; key <= n + 1; key++)
+            starts[key] += starts[key - 1];
+        int[] order = new int[numMaximal];
+        for (int m = 0; m < numMaximal; m++)
+            order[starts[n - (lasts[m] + 1 - firsts[m])]++] = m;
+
+        List<Range> trends = new ArrayList<Range>();
+        boolean[] chosen = new boolean[n];
+        for (int m : order) {
+            if (trends.size() >= maxCount ||
+                    lasts[m] + 1 - firsts[m] < minLength) {
+                break;
+            }
+            if (chosen[firsts[m]] || chosen[lasts[m]])
+                continue;
+            Arrays.fill(chosen, firsts[m], lasts[m] + 1, true);
+            trends.add(Range.fromBounds(
+                    firsts[m], lasts[m], lows[m], highs[m]));
+        }
+        return trends;
+    }
+
+    /**
+     * Returns the range with the longest sideways trend in the prices in the
+     * given index for each of the given (non-negative) maximum percent
+     * changes. Ties go to the earliest range, as in the linear method.
+     * <p>
+     * A trend for one threshold is also one for any larger threshold, so the
+     * thresholds are tried in increasing order, each starting from the length
+     * found for the one before. For each, the last index moves forward while
+     * the range of the current length plus one ending there is checked, and
+     * the length grows whenever that range is a sideways trend. Each check is
+     * one lookup in the index, so each threshold takes O(n) time.
+     */
+    static Range[] findLongestSidewaysTrends(double[] maxPctChanges,
+                                             RangeIndex prices) {
+        assert prices.size() > 0;
+
+        Integer[] order = new Integer[maxPctChanges.length];
+        for (int k = 0; k < order.length; k++)
+            order[k] = k;
+        Arrays.sort(order, (a, b) ->
+                Double.compare(maxPctChanges[a], maxPctChanges[b]));
+
+        Range[] longest = new Range[maxPctChanges.length];
+        int length = 1;
+        for (int k : order) {
+            double maxPctChange = maxPctChanges[k];
+            assert maxPctChange >= 0;
+
+            // Inv: no range of more than length prices ending before last is a
+            // sideways trend, and bestLast is the end of the first one with
+            // length prices, or -1 if none has been found yet.
+            int bestLast = -1;
+            for (int last = length - 1; last < prices.size(); last++) {
+                if (bestLast < 0 && prices.percentChangeAtMost(
+                        last - length + 1, last, maxPctChange)) {
+                    bestLast = last;
+                }
+                while (last - length >= 0 && prices.percentChangeAtMost(
+                        last - length, last, maxPctChange)) {
+                    length++;
+                    bestLast = last;
+                }
+            }
+            longest[k] = prices.range(bestLast - length + 1, bestLast);
+        }
+        return longest;
+    }
+
+    /**
+     * Returns the range with the longest sideways trend in the prices in the
+     * given index, by divide and conquer. Ties go to the earlier half.
+     */
+    static Range findLongestSidewaysTrend(double maxPctChange,
+                                          RangeIndex prices) {
+        assert prices.size() > 0;
+        return findLongestSidewaysTrend(
+                maxPctChange, prices, 0, prices.size() - 1);
+    }
+
     /**
      * Returns the range with the longest sideways trend in the price data from
      * {@code firstIndex} to {@code lastIndex} (inclusive).
      */
     private static Range findLongestSidewaysTrend(double maxPctChange,
-                                                  List<Integer> prices, int firstIndex, int lastIndex) {
+                                                  RangeIndex prices, int firstIndex, int lastIndex) {
         assert firstIndex <= lastIndex;
 
         // base case
         if (firstIndex == lastIndex) {
-            return Range.fromOneIndex(firstIndex, prices);
+            return prices.range(firstIndex, firstIndex);
         } else if (lastIndex - firstIndex == 1) {
-            Range first = Range.fromOneIndex(firstIndex, prices);
-            Range r = first.concat(Range.fromOneIndex(lastIndex, prices));
-            if (r.percentChangeAtMost(maxPctChange)) {
-                return r;
+            if (prices.percentChangeAtMost(firstIndex, lastIndex, maxPctChange)) {
+                return prices.range(firstIndex, lastIndex);
             } else {
-                return first;
+                return prices.range(firstIndex, firstIndex);
             }
         }
 
@@ -180,44 +450,25 @@ public class SidewaysTrend {
      * Returns the range with the longest sideways trend in the price data from
      * {@code firstIndex} to {@code lastIndex} (inclusive) that either starts
      * at or before {@code midIndex} or ends at or after {@code midIndex+1}. (If
-     * no such range defines a sideways trend, then it returns null.)
+     * no such range defines a sideways trend, then it returns null.) The low
+     * and high of each candidate range come from the index, so no ranges are
+     * built except the ones returned.
      */
     private static Range findLongestSidewaysTrendCrossingMidpoint(
-            double maxPctChange, List<Integer> prices, int firstIndex, int midIndex,
+            double maxPctChange, RangeIndex prices, int firstIndex, int midIndex,
             int lastIndex) {
-        List<Range> purple = new ArrayList<>();
-        List<Range> gold = new ArrayList<>();
-
-        //create gold ranges
-        Range goldRange = Range.fromOneIndex(midIndex, prices);
-        gold.add(goldRange); // add [n/2..n/2]
-        for (int i = midIndex - 1; i >= firstIndex; i--) {
-            goldRange = Range.fromOneIndex(i, prices).concat(goldRange);
-            gold.add(goldRange);
-        }
-        Collections.reverse(gold);
-
-        //crate purple ranges
-        Range purpleRange = Range.fromOneIndex(midIndex + 1, prices);
-        purple.add(purpleRange); // add [n/2 + 1 .. n/2 + 1]
-        for (int i = midIndex + 2; i <= lastIndex; i++) {
-            purpleRange = purpleRange.concat(Range.fromOneIndex(i, prices));
-            purple.add(purpleRange);
-        }
-
-        int rightFinger = 0;
+        int rightFinger = midIndex + 1;
         Range longestRange = null; // return null if no sideways trend found crossing midpoint
         int longestRangeLength = 0;
-        for (int leftFinger = 0; leftFinger < gold.size(); leftFinger++) { // left finger
-            for (int j = rightFinger; j < purple.size(); j++) { // right finger: it always starts from where it was last at
-                Range combined = gold.get(leftFinger).concat(purple.get(j));
-                if (!combined.percentChangeAtMost(maxPctChange)) {
+        for (int leftFinger = firstIndex; leftFinger <= midIndex; leftFinger++) { // left finger
+            for (int j = rightFinger; j <= lastIndex; j++) { // right finger: it always starts from where it was last at
+                if (!prices.percentChangeAtMost(leftFinger, j, maxPctChange)) {
                     break;
                 } else {
                     rightFinger = j; // after moving leftFinger, j starts from here
-                    if (combined.length() > longestRangeLength) {
-                        longestRange = combined;
-                        longestRangeLength = combined.length();
+                    if (j + 1 - leftFinger > longestRangeLength) {
+                        longestRange = prices.range(leftFinger, j);
+                        longestRangeLength = j + 1 - leftFinger;
                     }
                 }
             }
@@ -227,4 +478,3 @@ public class SidewaysTrend {
     }
 }
 
-
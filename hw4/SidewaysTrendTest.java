@@ -0,0 +1,256 @@
+package cse417;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class SidewaysTrendTest {
+
+  /** Returns a random walk of prices in cents starting at $100. */
+  static int[] makePrices(int n, long seed) {
+    Random rand = new Random(seed);
+    int[] prices = new int[n];
+    int price = 10000;
+    for (int i = 0; i < n; i++) {
+      price = Math.max(100,
+          price + (int) Math.round(150 * rand.nextGaussian()));
+      prices[i] = price;
+    }
+    return prices;
+  }
+
+  /** Returns the first longest sideways trend by checking every range. */
+  static Range findLongestByBruteForce(double maxPctChange, int[] prices) {
+    Range longest = null;
+    for (int i = 0; i < prices.length; i++) {
+      int low = prices[i], high = prices[i];
+      for (int j = i; j < prices.length; j++) {
+        low = Math.min(low, prices[j]);
+        high = Math.max(high, prices[j]);
+        if (!Range.percentChangeAtMost(low, high, maxPctChange))
+          break;
+        if (longest == null || j + 1 - i > longest.length())
+          longest = Range.fromBounds(i, j, low, high);
+      }
+    }
+    return longest;
+  }
+
+  /** Checks that the ranges have the same indexes and prices. */
+  static void assertSameRange(Range expected, Range actual) {
+    assertEquals(expected.firstIndex, actual.firstIndex);
+    assertEquals(expected.lastIndex, actual.lastIndex);
+    assertEquals(expected.lowPrice, actual.lowPrice);
+    assertEquals(expected.highPrice, actual.highPrice);
+  }
+
+  @Test
+  public void testMinMaxWindow() {
+    int[] prices = makePrices(500, 1);
+    Random rand = new Random(2);
+    MinMaxWindow window = new MinMaxWindow(prices);
+    while (window.getEndIndex() < prices.length) {
+      if (window.size() == 0 || rand.nextInt(3) > 0) {
+        window.extend();
+      } else {
+        window.shrink();
+      }
+      if (window.size() > 0) {
+        int low = Integer.MAX_VALUE, high = Integer.MIN_VALUE;
+        for (int i = window.getFirstIndex(); i < window.getEndIndex(); i++) {
+          low = Math.min(low, prices[i]);
+          high = Math.max(high, prices[i]);
+        }
+        assertEquals(low, window.getLowPrice());
+        assertEquals(high, window.getHighPrice());
+      }
+    }
+  }
+
+  /** Writes the prices to a CSV file with one row per day from 01-Jan-10. */
+  private static void writePrices(File file, int[] prices, boolean reversed)
+      throws IOException {
+    try (PrintStream out = new PrintStream(file)) {
+      out.println("Date,Close,Open,High,Low,Volume,Adj Close");
+      for (int k = 0; k < prices.length; k++) {
+        int i = reversed ? prices.length - 1 - k : k;
+        LocalDate date = LocalDate.of(2010, 1, 1).plusDays(i);
+        out.printf("%s,%.2f,0,0,0,0,0\n",
+            date.format(DateTimeFormatter.ofPattern("dd-MMM-yy")),
+            prices[i] / 100.);
+      }
+    }
+  }
+
+  @Test
+  public void testBatchScan() throws IOException {
+    File dir = Files.createTempDirectory("prices").toFile();
+    try {
+      int[] flat = {1000, 1010, 1005, 1000, 1020, 1200, 1190};
+      int[] wild = {1000, 1200, 1000, 1200, 1000, 1200, 1000};
+      writePrices(new File(dir, "flat.csv"), flat, false);
+      writePrices(new File(dir, "wild.csv"), wild, true);
+      try (PrintStream out = new PrintStream(new File(dir, "bad.csv"))) {
+        out.println("Date,Close");
+        out.println("not a date,1.00");
+      }
+      new File(dir, "dir.csv").mkdir();
+      try (PrintStream out = new PrintStream(new File(dir, "list.txt"))) {
+        out.println("# just one");
+        out.println("wild.csv");
+      }
+
+      PriceSeries series =
+          PriceSeries.load(new File(dir, "wild.csv").getPath());
+      assertArrayEquals(wild, series.getPrices());
+      assertEquals("01-Jan-10", series.formatDate(0));
+
+      List<String> files = BatchScan.findFiles(dir.getPath());
+      assertEquals(4, files.size());
+      BatchScan scan = new BatchScan(files, 3, 2);
+      assertEquals(2, scan.getFailures().size());
+      for (BatchScan.Result failure : scan.getFailures())
+        assertNotNull(failure.error);
+      assertEquals(2, scan.getResults().size());
+      assertEquals(14, scan.getNumPrices());
+      BatchScan.Result first = scan.getResults().get(0);
+      assertTrue(first.fileName.endsWith("flat.csv"));
+      assertEquals(5, first.longest.length());
+      assertEquals("01-Jan-10", first.firstDate);
+      assertEquals("05-Jan-10", first.lastDate);
+      assertEquals(1, scan.getResults().get(1).longest.length());
+
+      assertEquals(Arrays.asList(new File(dir, "wild.csv").getPath()),
+          BatchScan.findFiles(new File(dir, "list.txt").getPath()));
+    } finally {
+      for (File file : dir.listFiles())
+        file.delete();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testLinearMatchesBruteForce() {
+    for (int seed = 0; seed < 20; seed++) {
+      int[] prices = makePrices(1 + 50 * seed, seed);
+      for (double pct : new double[] {0, 1, 3, 5, 10}) {
+        assertSameRange(findLongestByBruteForce(pct, prices),
+            SidewaysTrend.findLongestSidewaysTrendLinear(pct, prices));
+      }
+    }
+  }
+
+  @Test
+  public void testLinearWithNegativeChange() {
+    int[] prices = {1000, 1000, 990};
+    assertSameRange(Range.fromBounds(0, 0, 1000, 1000),
+        SidewaysTrend.findLongestSidewaysTrendLinear(-1, prices));
+  }
+
+  @Test
+  public void testDivideAndConquerMatchesBruteForce() {
+    for (int seed = 0; seed < 20; seed++) {
+      int[] prices = makePrices(1 + 50 * seed, seed);
+      for (double pct : new double[] {0, 1, 3, 5, 10}) {
+        Range expected = findLongestByBruteForce(pct, prices);
+        Range actual = SidewaysTrend.findLongestSidewaysTrend(
+            pct, new SparseTable(prices));
+        assertEquals(expected.length(), actual.length());
+        assertTrue(Range.percentChangeAtMost(
+            actual.lowPrice, actual.highPrice, pct));
+      }
+    }
+  }
+
+  @Test
+  public void testProfileMatchesBruteForce() {
+    double[] pcts = {5, 0, 10, 1, 3, 3, 0.5};
+    for (int seed = 0; seed < 20; seed++) {
+      int[] prices = makePrices(1 + 50 * seed, seed);
+      Range[] longest = SidewaysTrend.findLongestSidewaysTrends(
+          pcts, new SegmentTree(prices));
+      assertEquals(pcts.length, longest.length);
+      for (int k = 0; k < pcts.length; k++)
+        assertSameRange(findLongestByBruteForce(pcts[k], prices), longest[k]);
+    }
+  }
+
+  /** Returns the trends described in findSidewaysTrends by brute force. */
+  static List<Range> findTrendsByBruteForce(double maxPctChange, int[] prices,
+      int minLength, int maxCount) {
+    List<Range> maximal = new ArrayList<Range>();
+    for (int i = 0; i < prices.length; i++) {
+      for (int j = i; j < prices.length; j++) {
+        Range r = SidewaysTrend.findLongestSidewaysTrendLinear(maxPctChange,
+            Arrays.copyOfRange(prices, i, j + 1));
+        boolean sideways = (r.length() == j + 1 - i);
+        boolean left = (i > 0) && SidewaysTrend.findLongestSidewaysTrendLinear(
+            maxPctChange, Arrays.copyOfRange(prices, i - 1, j + 1)).length()
+            == j + 2 - i;
+        boolean right = (j + 1 < prices.length) &&
+            SidewaysTrend.findLongestSidewaysTrendLinear(maxPctChange,
+                Arrays.copyOfRange(prices, i, j + 2)).length() == j + 2 - i;
+        if (sideways && !left && !right) {
+          maximal.add(Range.fromBounds(i, j, r.lowPrice, r.highPrice));
+        }
+      }
+    }
+    Collections.sort(maximal, (a, b) -> (a.length() != b.length()) ?
+        b.length() - a.length() : a.firstIndex - b.firstIndex);
+
+    List<Range> trends = new ArrayList<Range>();
+    for (Range r : maximal) {
+      if (trends.size() == maxCount || r.length() < minLength)
+        break;
+      boolean overlaps = false;
+      for (Range t : trends) {
+        overlaps |=
+            (r.firstIndex <= t.lastIndex && t.firstIndex <= r.lastIndex);
+      }
+      if (!overlaps)
+        trends.add(r);
+    }
+    return trends;
+  }
+
+  @Test
+  public void testTrendsMatchBruteForce() {
+    for (int seed = 0; seed < 12; seed++) {
+      int[] prices = makePrices(1 + 7 * seed, seed);
+      for (double pct : new double[] {0, 1, 3, 5}) {
+        for (int[] limits : new int[][] {{1, 1000}, {3, 1000}, {1, 2}}) {
+          List<Range> expected =
+              findTrendsByBruteForce(pct, prices, limits[0], limits[1]);
+          List<Range> actual = SidewaysTrend.findSidewaysTrends(
+              pct, prices, limits[0], limits[1]);
+          assertEquals(expected.size(), actual.size());
+          for (int k = 0; k < expected.size(); k++)
+            assertSameRange(expected.get(k), actual.get(k));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTrendsWithNegativeChange() {
+    int[] prices = {1000, 1000, 990};
+    List<Range> trends = SidewaysTrend.findSidewaysTrends(-1, prices, 1, 2);
+    assertEquals(2, trends.size());
+    assertSameRange(Range.fromBounds(0, 0, 1000, 1000), trends.get(0));
+    assertSameRange(Range.fromBounds(1, 1, 1000, 1000), trends.get(1));
+  }
+}
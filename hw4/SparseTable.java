@@ -0,0 +1,57 @@
+package cse417;
+
+
+/**
+ * Index of the low and high prices in every range of a fixed array of prices
+ * that answers each query in O(1) time. For each power of two {@code 2^k},
+ * it stores the low and high of the {@code 2^k} prices starting at each index,
+ * so any range is covered by two (overlapping) such blocks. Building it takes
+ * O(n log n) time and space, so a {@code SegmentTree} is better for very long
+ * series, or for series that change.
+ */
+public class SparseTable implements RangeIndex {
+
+  /** Low and high of the {@code 2^k} prices starting at i, by k and then i. */
+  private final int[][] lows;
+  private final int[][] highs;
+
+  /** Creates an index of the given prices, which should not change. */
+  public SparseTable(int[] prices) {
+    int n = prices.length;
+    int levels = 1;
+    while ((1 << levels) <= n)
+      levels++;
+
+    lows = new int[levels][];
+    highs = new int[levels][];
+    lows[0] = prices.clone();
+    highs[0] = prices.clone();
+    for (int k = 1; k < levels; k++) {
+      int half = 1 << (k - 1);
+      int count = n - (1 << k) + 1;
+      lows[k] = new int[count];
+      highs[k] = new int[count];
+      for (int i = 0; i < count; i++) {
+        lows[k][i] = Math.min(lows[k - 1][i], lows[k - 1][i + half]);
+        highs[k][i] = Math.max(highs[k - 1][i], highs[k - 1][i + half]);
+      }
+    }
+  }
+
+  @Override
+  public int size() { return lows[0].length; }
+
+  @Override
+  public int min(int i, int j) {
+    assert 0 <= i && i <= j && j < size();
+    int k = 31 - Integer.numberOfLeadingZeros(j - i + 1);
+    return Math.min(lows[k][i], lows[k][j - (1 << k) + 1]);
+  }
+
+  @Override
+  public int max(int i, int j) {
+    assert 0 <= i && i <= j && j < size();
+    int k = 31 - Integer.numberOfLeadingZeros(j - i + 1);
+    return Math.max(highs[k][i], highs[k][j - (1 << k) + 1]);
+  }
+}